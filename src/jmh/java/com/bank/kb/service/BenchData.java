@@ -0,0 +1,162 @@
+package com.bank.kb.service;
+
+import com.bank.kb.KbApplication;
+import com.bank.kb.config.DeptCategoryMapping;
+import com.bank.kb.entity.KnowledgeRecord;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准用的合成数据：20 个部门轮流分配，业务名称/正文由固定词表拼出来，种子固定保证每次一致。
+ */
+final class BenchData {
+
+    static final List<String> DEPARTMENTS = List.copyOf(DeptCategoryMapping.DEPT_TO_CATEGORY.keySet());
+
+    // 检索基准轮流使用的查询词（长短、中英文、命中多少都有）
+    static final List<String> QUERIES = List.of(
+            "贷款审批", "印章", "门禁管理", "ATM", "反洗钱", "授信额度", "柜面", "考勤", "押运", "档案借阅"
+    );
+
+    private static final String[] SUBJECTS = {
+            "贷款审批", "贷后检查", "印章管理", "门禁管理", "ATM 加钞", "反洗钱筛查", "授信额度调整", "柜面业务",
+            "考勤管理", "押运交接", "档案借阅", "重要空白凭证", "账户开立", "征信查询", "资产处置", "合同管理"
+    };
+    private static final String[] ACTIONS = {"办理流程", "操作规范", "检查要点", "审批权限", "登记要求", "复核要求"};
+    private static final String[] SENTENCES = {
+            "经办人员应当核对客户身份并留存影像资料。", "发现异常情况须在当日报告部门负责人。",
+            "未按规定执行的，按扣罚标准对责任人扣减绩效。", "相关台账应当按月装订并移交档案室。",
+            "系统权限调整须经双人复核后方可生效。", "检查中发现某支行未按规定执行交接登记。"
+    };
+
+    private BenchData() {}
+
+    static KnowledgeRecord record(Random rnd, int i) {
+        String dept = DEPARTMENTS.get(i % DEPARTMENTS.size());
+        String subject = SUBJECTS[rnd.nextInt(SUBJECTS.length)];
+        return KnowledgeRecord.builder()
+                .category(DeptCategoryMapping.categoryOf(dept))
+                .department(dept)
+                .sheetName("导入数据")
+                .bizName(subject + ACTIONS[rnd.nextInt(ACTIONS.length)] + "-" + i)
+                .process(text(rnd, 4))
+                .latestReqDate(LocalDate.of(2015, 1, 1).plusDays(rnd.nextInt(3650)))
+                .latestReq(text(rnd, 3))
+                .caseText(text(rnd, 6))
+                .penalty(text(rnd, 2))
+                .basis("《" + subject + "管理办法》第" + (1 + rnd.nextInt(40)) + "条")
+                .keywords(subject + "," + SUBJECTS[rnd.nextInt(SUBJECTS.length)])
+                .status("有效")
+                .build();
+    }
+
+    static List<KnowledgeRecord> records(int n, long seed) {
+        Random rnd = new Random(seed);
+        List<KnowledgeRecord> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(record(rnd, i));
+        return out;
+    }
+
+    /**
+     * 按内置模板（kb_stystem_template.xlsx）的表头生成 rows 行的工作簿；SXSSF 流式写，10 万行也不占多少堆。
+     */
+    static Path workbook(int rows, long seed) throws IOException {
+        List<String> headers = templateHeaders();
+        Path file = Files.createTempFile("kb-bench-" + rows + "-", ".xlsx");
+        Random rnd = new Random(seed);
+
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(200); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = wb.createSheet("导入数据");
+            // 和模板一样：第一行填写说明，第二行表头
+            sheet.createRow(0).createCell(0).setCellValue("填写说明（基准数据）");
+            Row head = sheet.createRow(1);
+            for (int c = 0; c < headers.size(); c++) head.createCell(c).setCellValue(headers.get(c));
+
+            for (int i = 0; i < rows; i++) {
+                KnowledgeRecord r = record(rnd, i);
+                Row row = sheet.createRow(i + 2);
+                for (int c = 0; c < headers.size(); c++) {
+                    String v = cell(r, ExcelImportService.normalizeHeader(headers.get(c)));
+                    if (v != null) row.createCell(c).setCellValue(v);
+                }
+            }
+            wb.write(out);
+            wb.dispose();
+        }
+        return file;
+    }
+
+    /**
+     * 启动完整应用（内嵌 H2，随机端口），检索/导入基准直接取 Spring Bean。
+     */
+    static ConfigurableApplicationContext startApp(String dbName) {
+        // 用命令行参数传（优先级高于 application.yml），properties() 只是默认值，会被 yml 里的 MySQL 覆盖
+        return new SpringApplicationBuilder(KbApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + dbName + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                // 测的是真实检索路径，不是缓存命中
+                "--kb.search.cache.max-entries=0",
+                // 每次都是新建的内存库，不读写索引快照
+                "--kb.search.snapshot.path=");
+    }
+
+    private static List<String> templateHeaders() throws IOException {
+        try (InputStream in = BenchData.class.getResourceAsStream("/static/kb_stystem_template.xlsx");
+             XSSFWorkbook wb = new XSSFWorkbook(in)) {
+            Sheet sheet = wb.getSheetAt(0);
+            for (int r = 0; r <= sheet.getLastRowNum(); r++) {
+                Row row = sheet.getRow(r);
+                if (row == null) continue;
+                List<String> out = new ArrayList<>();
+                for (int c = 0; c < row.getLastCellNum(); c++) {
+                    out.add(row.getCell(c) == null ? "" : row.getCell(c).toString());
+                }
+                if (out.stream().map(ExcelImportService::normalizeHeader).anyMatch("业务名称"::equals)) return out;
+            }
+            throw new IllegalStateException("模板里没有找到表头行");
+        }
+    }
+
+    private static String cell(KnowledgeRecord r, String header) {
+        return switch (header) {
+            case "分类" -> r.getCategory();
+            case "部门" -> r.getDepartment();
+            case "业务名称" -> r.getBizName();
+            case "办理流程" -> r.getProcess();
+            case "最新要求下达时间" -> r.getLatestReqDate().toString();
+            case "最新要求" -> r.getLatestReq();
+            case "案例" -> r.getCaseText();
+            case "扣罚标准" -> r.getPenalty();
+            case "制度依据" -> r.getBasis();
+            case "关键词" -> r.getKeywords();
+            case "状态" -> r.getStatus();
+            default -> null;
+        };
+    }
+
+    private static String text(Random rnd, int sentences) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < sentences; i++) sb.append(SENTENCES[rnd.nextInt(SENTENCES.length)]);
+        return sb.toString();
+    }
+}
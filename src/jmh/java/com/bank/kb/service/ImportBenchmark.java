@@ -0,0 +1,69 @@
+package com.bank.kb.service;
+
+import com.bank.kb.repo.KnowledgeRecordRepo;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 整个文件导入（SAX 解析 + 分批 upsert + 索引增量更新），按内置模板表头生成不同行数的工作簿。
+ *
+ * - mode=insert：空库导入，全部是新增
+ * - mode=reimport：同一文件已经导过一次，再导全部命中指纹、不写库
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ImportBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    @Param({"insert", "reimport"})
+    public String mode;
+
+    private ConfigurableApplicationContext app;
+    private ExcelImportService importer;
+    private KnowledgeRecordRepo repo;
+    private JdbcTemplate jdbc;
+    private KnowledgeIndex index;
+    private Path workbook;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workbook = BenchData.workbook(rows, 42);
+        app = BenchData.startApp("import" + rows);
+        importer = app.getBean(ExcelImportService.class);
+        repo = app.getBean(KnowledgeRecordRepo.class);
+        jdbc = app.getBean(JdbcTemplate.class);
+        index = app.getBean(KnowledgeIndex.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareTable() {
+        // 正文表外键指向表头，先删正文
+        jdbc.execute("delete from knowledge_record_body");
+        repo.deleteAllInBatch();
+        index.rebuild();
+        if ("reimport".equals(mode)) importer.importExcel(workbook, "bench.xlsx", null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        app.close();
+        Files.deleteIfExists(workbook);
+    }
+
+    @Benchmark
+    public ExcelImportService.ImportResult importFile() {
+        return importer.importExcel(workbook, "bench.xlsx", null);
+    }
+}
@@ -0,0 +1,75 @@
+package com.bank.kb.service;
+
+import com.bank.kb.repo.KnowledgeRecordRepo;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 检索：内嵌 H2 里灌 N 条（20 个部门平均分配），索引重建后轮流跑一组查询词。
+ *
+ * - indexOnly：只算内存索引的命中 id
+ * - fullRecords：/api/search 默认模式（按 id 回表取完整记录）
+ * - summaries：/api/search?view=summary（投影 + 数据库端截片段）
+ * - departmentFilter：带部门过滤
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class SearchBenchmark {
+
+    @Param({"10000", "100000"})
+    public int records;
+
+    private ConfigurableApplicationContext app;
+    private SearchService search;
+    private KnowledgeIndex index;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        app = BenchData.startApp("search" + records);
+        KnowledgeRecordRepo repo = app.getBean(KnowledgeRecordRepo.class);
+        for (int from = 0; from < records; from += 5000) {
+            repo.saveAll(BenchData.records(Math.min(5000, records - from), from));
+        }
+        index = app.getBean(KnowledgeIndex.class);
+        index.rebuild();
+        search = app.getBean(SearchService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.close();
+    }
+
+    private String nextQuery() {
+        List<String> qs = BenchData.QUERIES;
+        return qs.get(next++ % qs.size());
+    }
+
+    @Benchmark
+    public List<Long> indexOnly() {
+        return index.search(nextQuery(), null, null, 50);
+    }
+
+    @Benchmark
+    public Object fullRecords() {
+        return search.search(nextQuery(), null, null, null, 50);
+    }
+
+    @Benchmark
+    public Object summaries() {
+        return search.searchSummaries(nextQuery(), null, null, null, 50);
+    }
+
+    @Benchmark
+    public Object departmentFilter() {
+        return search.searchSummaries(nextQuery(), null, BenchData.DEPARTMENTS.get(next % BenchData.DEPARTMENTS.size()), null, 50);
+    }
+}
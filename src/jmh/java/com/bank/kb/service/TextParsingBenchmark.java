@@ -0,0 +1,64 @@
+package com.bank.kb.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 逐行/逐字段调用的小函数：分词、表头归一化、日期解析、空行判断。
+ * 配合 -prof gc 看每次调用的分配字节数。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextParsingBenchmark {
+
+    private String body;
+    private final String[] headers = {
+            "业务名称 *", "最新要求下达时间（可空，YYYY-MM-DD）", "关键词 *（支持单字，用空格/逗号分隔）", "状态(可空)"
+    };
+    private final String[] dates = {"2025-12-16", "2025/1/6", "2025.12.16", "", "不是日期"};
+    private final String[] blankRow = new String[13];
+    private final String[] filledRow = new String[13];
+
+    @Setup
+    public void setup() {
+        body = BenchData.record(new java.util.Random(1), 0).getCaseText();
+        filledRow[12] = "有效";
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole bh) {
+        CjkTokenizer.tokenize(body, bh::consume);
+    }
+
+    @Benchmark
+    public List<String> queryTerms() {
+        return CjkTokenizer.queryTerms("个人住房贷款审批 ATM");
+    }
+
+    @Benchmark
+    public void normalizeHeader(Blackhole bh) {
+        for (String h : headers) bh.consume(ExcelImportService.normalizeHeader(h));
+    }
+
+    @Benchmark
+    public void parseDate(Blackhole bh) {
+        for (String d : dates) {
+            LocalDate v = ExcelImportService.parseDate(d);
+            bh.consume(v);
+        }
+    }
+
+    @Benchmark
+    public void isRowBlank(Blackhole bh) {
+        bh.consume(ExcelImportService.isRowBlank(blankRow, 12));
+        bh.consume(ExcelImportService.isRowBlank(filledRow, 12));
+    }
+}
@@ -0,0 +1,63 @@
+package com.bank.kb.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 老库升级：正文大字段原来在 knowledge_record 里，拆到 knowledge_record_body 之后
+ * （ddl-auto=update 只建新表，不会搬数据、也不删旧列）启动时搬一次：
+ *
+ * - 先把旧列逐行拷进正文表（已有正文的跳过），再删掉旧列，表头行才真正变窄
+ * - 可重入：中途失败下次启动接着做；旧列都不在了就什么也不做
+ *
+ * CommandLineRunner 在 ApplicationReadyEvent 之前跑完，内存索引构建时读到的已是新表。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KnowledgeBodyMigration implements CommandLineRunner {
+
+    private static final List<String> COLUMNS = List.of("process", "latest_req", "case_text", "penalty", "basis", "keywords");
+
+    private final JdbcTemplate jdbc;
+
+    @Override
+    public void run(String... args) {
+        List<String> legacy = legacyColumns();
+        if (legacy.isEmpty()) return;
+
+        long t0 = System.nanoTime();
+        if (legacy.size() == COLUMNS.size()) {
+            String cols = String.join(", ", COLUMNS);
+            int copied = jdbc.update("insert into knowledge_record_body (id, " + cols + ") "
+                    + "select r.id, " + cols.replaceAll("(\\w+)", "r.$1") + " from knowledge_record r "
+                    + "where not exists (select 1 from knowledge_record_body b where b.id = r.id)");
+            log.info("正文迁移：{} 条记录的正文已拷到 knowledge_record_body", copied);
+        } else {
+            // 上次拷完、删列删到一半：正文已经在新表里了，只把剩下的旧列删掉
+            log.warn("正文迁移：knowledge_record 只剩部分旧正文列 {}，跳过拷贝直接删除", legacy);
+        }
+        for (String c : legacy) jdbc.execute("alter table knowledge_record drop column " + c);
+        log.info("正文迁移完成：删除旧列 {}，耗时 {} ms", legacy, (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    private List<String> legacyColumns() {
+        return jdbc.query("select * from knowledge_record where 1 = 0", rs -> {
+            ResultSetMetaData md = rs.getMetaData();
+            List<String> out = new ArrayList<>();
+            for (int i = 1; i <= md.getColumnCount(); i++) {
+                String name = md.getColumnName(i).toLowerCase(Locale.ROOT);
+                if (COLUMNS.contains(name)) out.add(name);
+            }
+            return out;
+        });
+    }
+}
@@ -1,10 +1,13 @@
 package com.bank.kb.config;
 
-import com.bank.kb.repo.UserAccountRepo;
+import com.bank.kb.service.UserAccountCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.boot.autoconfigure.security.servlet.PathRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -20,22 +23,23 @@ import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 @RequiredArgsConstructor
 public class SecurityConfig {
 
-    private final UserAccountRepo userRepo;
+    private final UserAccountCache accounts;
 
     @Bean
     public UserDetailsService userDetailsService() {
-        return username -> userRepo.findByUsername(username)
+        // 走账号缓存，登录不再每次查库
+        return username -> accounts.find(username)
                 .map(u -> (UserDetails) new User(
-                        u.getUsername(),
-                        u.getPasswordHash(),
-                        java.util.List.of(new SimpleGrantedAuthority("ROLE_" + u.getRole()))
+                        u.username(),
+                        u.passwordHash(),
+                        java.util.List.of(new SimpleGrantedAuthority("ROLE_" + u.role()))
                 ))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meters) {
+        return new TimedPasswordEncoder(new BCryptPasswordEncoder(), meters);
     }
 
     @Bean
@@ -60,8 +64,12 @@ public class SecurityConfig {
                                 "/style.css",
                                 "/app.js"
                         ).permitAll()
-                        .requestMatchers("/api/search").permitAll()
+                        .requestMatchers("/api/search", "/api/suggest").permitAll()
+                        // 搜索结果展开详情（与 /api/search 一样对员工开放）
+                        .requestMatchers(HttpMethod.GET, "/api/knowledge/{id:\\d+}").permitAll()
                         .requestMatchers("/login", "/logout").permitAll()
+                        // Prometheus 抓取（不带会话）：端点只在 management.server 的本机端口上，应用端口没有 /actuator
+                        .requestMatchers(EndpointRequest.to("health", "prometheus")).permitAll()
                         .anyRequest().authenticated()
                 )
 
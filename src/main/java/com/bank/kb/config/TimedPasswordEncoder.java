@@ -0,0 +1,50 @@
+package com.bank.kb.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 给登录时的密码校验（BCrypt matches）计时：kb.auth.password.verify{outcome=match|mismatch}。
+ * BCrypt 故意很慢，登录变慢时先看这里。
+ */
+public class TimedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final Timer matched;
+    private final Timer mismatched;
+
+    public TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meters) {
+        this.delegate = delegate;
+        this.matched = verifyTimer(meters, "match");
+        this.mismatched = verifyTimer(meters, "mismatch");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long t0 = System.nanoTime();
+        boolean ok = delegate.matches(rawPassword, encodedPassword);
+        (ok ? matched : mismatched).record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        return ok;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private static Timer verifyTimer(MeterRegistry meters, String outcome) {
+        return Timer.builder("kb.auth.password.verify")
+                .description("登录密码校验耗时")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meters);
+    }
+}
@@ -0,0 +1,94 @@
+package com.bank.kb.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 长正文压缩存储：deflate 后 base64，前面加 {@link #PREFIX}，列类型不变（仍是 LONGTEXT/CLOB）。
+ *
+ * - 读：带前缀的解压，不带的原样返回（老数据、短文本、关闭压缩后写的都是明文）
+ * - 写：kb.body.compress=true 且不短于 compress-min-chars、压完确实更小才压，否则写明文
+ *
+ * 由 Hibernate 经 Spring 创建（@Value 生效）；数据库里压缩过的列不能再 like/locate，
+ * 检索走内存索引，片段由 SearchService 对这些行在应用里解压后截取。
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, String> {
+
+    /** 压缩格式标记：控制字符开头，正常文本不会这样开头 */
+    public static final String PREFIX = "\u0001z1:";
+
+    @Value("${kb.body.compress:false}")
+    private boolean compress;
+
+    @Value("${kb.body.compress-min-chars:512}")
+    private int minChars = 512;
+
+    public CompressedTextConverter() {}
+
+    public CompressedTextConverter(boolean compress, int minChars) {
+        this.compress = compress;
+        this.minChars = minChars;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String text) {
+        if (!compress || text == null || text.length() < minChars) return text;
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        String packed = PREFIX + Base64.getEncoder().encodeToString(deflate(raw));
+        // 按存储字节比：压缩串是 ASCII，明文按 UTF-8（中文每字 3 字节）
+        return packed.length() < raw.length ? packed : text;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String column) {
+        return isPacked(column) ? unpack(column) : column;
+    }
+
+    public static boolean isPacked(String column) {
+        return column != null && column.startsWith(PREFIX);
+    }
+
+    private static String unpack(String column) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(Base64.getDecoder().decode(column.substring(PREFIX.length())));
+            ByteArrayOutputStream out = new ByteArrayOutputStream(column.length() * 4);
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("压缩正文不完整");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException | IllegalArgumentException e) {
+            throw new IllegalStateException("压缩正文无法解压", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) out.write(buf, 0, deflater.deflate(buf));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.bank.kb.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * 知识记录的正文（大字段）：和 knowledge_record 共用主键，一对一。
+ * 筛选、排序、列表只扫表头行，正文按需取或按页一次批量取。
+ *
+ * 办理流程、案例、扣罚标准、制度依据可压缩存储（{@link CompressedTextConverter}，kb.body.compress 开启）；
+ * 最新要求和关键词较短且数据库端要 like，保持明文。
+ */
+@Entity
+@Table(name = "knowledge_record_body")
+@Getter @Setter
+@NoArgsConstructor
+public class KnowledgeBody {
+
+    @Id
+    private Long id;
+
+    @JsonIgnore
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "id")
+    private KnowledgeRecord record;
+
+    // 办理流程
+    @Lob
+    @Convert(converter = CompressedTextConverter.class)
+    private String process;
+
+    // 最新要求
+    @Lob
+    private String latestReq;
+
+    // 案例
+    @Lob
+    @Convert(converter = CompressedTextConverter.class)
+    private String caseText;
+
+    // 扣罚标准
+    @Lob
+    @Convert(converter = CompressedTextConverter.class)
+    private String penalty;
+
+    // 制度依据
+    @Lob
+    @Convert(converter = CompressedTextConverter.class)
+    private String basis;
+
+    // 关键词（同义词、简称）
+    @Lob
+    private String keywords;
+}
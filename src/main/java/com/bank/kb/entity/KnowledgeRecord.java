@@ -1,5 +1,6 @@
 package com.bank.kb.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -11,7 +12,10 @@ import java.time.LocalDateTime;
         indexes = {
                 @Index(name="idx_kb_category", columnList="category"),
                 @Index(name="idx_kb_dept", columnList="department"),
-                @Index(name="idx_kb_latestDate", columnList="latestReqDate")
+                @Index(name="idx_kb_latestDate", columnList="latestReqDate"),
+                @Index(name="idx_kb_latestDate_id", columnList="latestReqDate,id"),
+                @Index(name="idx_kb_dept_biz", columnList="department,bizName"),
+                @Index(name="idx_kb_updatedAt_id", columnList="updatedAt,id")
         })
 @Getter @Setter
 @NoArgsConstructor
@@ -35,33 +39,14 @@ public class KnowledgeRecord {
     @Column(length = 200)
     private String bizName;
 
-    // 办理流程
-    @Lob
-    private String process;
+    // 正文（办理流程、最新要求、案例、扣罚标准、制度依据、关键词）在 knowledge_record_body，按需加载
+    @JsonIgnore
+    @OneToOne(mappedBy = "record", fetch = FetchType.LAZY, cascade = CascadeType.ALL, optional = false)
+    private KnowledgeBody body;
 
     // 最新要求下达时间
     private LocalDate latestReqDate;
 
-    // 最新要求
-    @Lob
-    private String latestReq;
-
-    // 案例
-    @Lob
-    private String caseText;
-
-    // 扣罚标准
-    @Lob
-    private String penalty;
-
-    // 制度依据
-    @Lob
-    private String basis;
-
-    // 关键词（同义词、简称）
-    @Lob
-    private String keywords;
-
     // 维护人
     @Column(length = 60)
     private String owner;
@@ -83,11 +68,16 @@ public class KnowledgeRecord {
 
     private Integer rowNo;
 
+    // 内容指纹（正文各字段的 SHA-256），重复导入时用来判断是否需要更新
+    @Column(length = 64)
+    private String contentHash;
+
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
     @PrePersist
     public void prePersist() {
+        body().setRecord(this);
         createdAt = LocalDateTime.now();
         updatedAt = createdAt;
         if (status == null || status.isBlank()) status = "有效";
@@ -97,4 +87,44 @@ public class KnowledgeRecord {
     public void preUpdate() {
         updatedAt = LocalDateTime.now();
     }
+
+    // ===================== 正文字段（读写 body，接口 JSON 和 Excel 导入导出不变） =====================
+
+    public String getProcess() { return body == null ? null : body.getProcess(); }
+    public void setProcess(String v) { body().setProcess(v); }
+
+    public String getLatestReq() { return body == null ? null : body.getLatestReq(); }
+    public void setLatestReq(String v) { body().setLatestReq(v); }
+
+    public String getCaseText() { return body == null ? null : body.getCaseText(); }
+    public void setCaseText(String v) { body().setCaseText(v); }
+
+    public String getPenalty() { return body == null ? null : body.getPenalty(); }
+    public void setPenalty(String v) { body().setPenalty(v); }
+
+    public String getBasis() { return body == null ? null : body.getBasis(); }
+    public void setBasis(String v) { body().setBasis(v); }
+
+    public String getKeywords() { return body == null ? null : body.getKeywords(); }
+    public void setKeywords(String v) { body().setKeywords(v); }
+
+    private KnowledgeBody body() {
+        if (body == null) body = new KnowledgeBody();
+        return body;
+    }
+
+    /** builder 照旧能直接设正文字段 */
+    public static class KnowledgeRecordBuilder {
+        public KnowledgeRecordBuilder process(String v) { body().setProcess(v); return this; }
+        public KnowledgeRecordBuilder latestReq(String v) { body().setLatestReq(v); return this; }
+        public KnowledgeRecordBuilder caseText(String v) { body().setCaseText(v); return this; }
+        public KnowledgeRecordBuilder penalty(String v) { body().setPenalty(v); return this; }
+        public KnowledgeRecordBuilder basis(String v) { body().setBasis(v); return this; }
+        public KnowledgeRecordBuilder keywords(String v) { body().setKeywords(v); return this; }
+
+        private KnowledgeBody body() {
+            if (body == null) body = new KnowledgeBody();
+            return body;
+        }
+    }
 }
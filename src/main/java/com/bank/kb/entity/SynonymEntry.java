@@ -0,0 +1,40 @@
+package com.bank.kb.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 管理员维护的同义词/简称：term 与 synonyms 中的每个词互为同义（双向）。
+ */
+@Entity
+@Table(name = "synonym_entry")
+@Getter @Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SynonymEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(unique = true, nullable = false, length = 100)
+    private String term;
+
+    // 逗号/顿号/空格分隔
+    @Column(nullable = false, length = 1000)
+    private String synonyms;
+
+    @Column(length = 60)
+    private String updatedBy;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,10 @@
+package com.bank.kb.repo;
+
+/**
+ * 全表 id 概况：记录数、最大 id、id 之和。索引快照恢复后和内存索引对账用（只扫主键）。
+ */
+public interface KnowledgeIdStatsView {
+    Long getCount();
+    Long getMaxId();
+    Long getIdSum();
+}
@@ -0,0 +1,13 @@
+package com.bank.kb.repo;
+
+/**
+ * 导入去重用的轻量投影：行键（部门 + Sheet + 业务名称）+ 内容指纹，不带正文。
+ */
+public interface KnowledgeKeyView {
+    Long getId();
+    String getDepartment();
+    String getSheetName();
+    String getBizName();
+    String getContentHash();
+    String getStatus();
+}
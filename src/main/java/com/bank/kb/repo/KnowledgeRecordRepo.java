@@ -1,18 +1,137 @@
 package com.bank.kb.repo;
 
 import com.bank.kb.entity.KnowledgeRecord;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+/**
+ * 知识记录：表头在 knowledge_record，正文在 knowledge_record_body（{@link com.bank.kb.entity.KnowledgeBody}）。
+ * 返回完整记录的查询都带 @EntityGraph("body")：筛选/排序只走表头，正文按本页的 id 一起关联取回；
+ * 只要表头的走投影或 findById（正文懒加载）。
+ */
 public interface KnowledgeRecordRepo extends JpaRepository<KnowledgeRecord, Long>, JpaSpecificationExecutor<KnowledgeRecord> {
 
-
     @Query(value = "select * from knowledge_record order by id desc limit :n", nativeQuery = true)
     List<KnowledgeRecord> findTopN(@Param("n") int n);
 
+    // 列表 keyset 翻页：(latestReqDate, id) 倒序；传 Pageable 只为带上 limit，返回 List 不会触发 count(*)
+    @EntityGraph(attributePaths = "body")
+    @Query("select r from KnowledgeRecord r where r.latestReqDate is not null order by r.latestReqDate desc, r.id desc")
+    List<KnowledgeRecord> findDatedPage(Pageable pageable);
+
+    @EntityGraph(attributePaths = "body")
+    @Query("""
+            select r from KnowledgeRecord r
+            where r.latestReqDate < :date or (r.latestReqDate = :date and r.id < :id)
+            order by r.latestReqDate desc, r.id desc
+            """)
+    List<KnowledgeRecord> findDatedPageAfter(@Param("date") LocalDate date, @Param("id") Long id, Pageable pageable);
+
+    // 没有下达时间的记录排在最后，单独按 id 倒序翻
+    @EntityGraph(attributePaths = "body")
+    @Query("select r from KnowledgeRecord r where r.latestReqDate is null and r.id < :id order by r.id desc")
+    List<KnowledgeRecord> findUndatedPageAfter(@Param("id") Long id, Pageable pageable);
+
+    // 按 id 分批读取（启动时构建内存索引用）
+    @EntityGraph(attributePaths = "body")
+    List<KnowledgeRecord> findTop500ByIdGreaterThanOrderByIdAsc(Long id);
+
+    // 从索引快照恢复后，只回放快照之后有改动的记录（走 updatedAt,id 索引）
+    @EntityGraph(attributePaths = "body")
+    List<KnowledgeRecord> findTop500ByUpdatedAtAfterAndIdGreaterThanOrderByIdAsc(LocalDateTime since, Long id);
+
+    // 快照恢复后的对账：只数主键，删一条再插一条（记录数不变）也能对出来
+    @Query("select count(r) as count, coalesce(max(r.id), 0) as maxId, coalesce(sum(r.id), 0) as idSum from KnowledgeRecord r")
+    KnowledgeIdStatsView findIdStats();
+
+    // 变更流：按 (updatedAt, id) 正序从水位之后取，until 之后的（可能还有未提交的同时刻写入）先不给
+    @EntityGraph(attributePaths = "body")
+    @Query("""
+            select r from KnowledgeRecord r
+            where (r.updatedAt > :at or (r.updatedAt = :at and r.id > :id)) and r.updatedAt <= :until
+            order by r.updatedAt asc, r.id asc
+            """)
+    List<KnowledgeRecord> findChangedAfter(@Param("at") LocalDateTime at, @Param("id") Long id,
+                                           @Param("until") LocalDateTime until, Pageable pageable);
+
+    // 导出：游标方式逐行读（MySQL 需要连接串里 useCursorFetch=true 才按 fetchSize 分批取，否则整个结果集读进内存）
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @EntityGraph(attributePaths = "body")
+    @Query("""
+            select r from KnowledgeRecord r
+            where (:category is null or r.category = :category) and (:department is null or r.department = :department)
+            order by r.id
+            """)
+    Stream<KnowledgeRecord> streamForExport(@Param("category") String category, @Param("department") String department);
+
+    // 按 id 取完整记录（检索结果页、导出、导入更新），正文同一条 SQL 关联取回
+    @EntityGraph(attributePaths = "body")
+    List<KnowledgeRecord> findWithBodyByIdIn(Collection<Long> ids);
+
+    @EntityGraph(attributePaths = "body")
+    Optional<KnowledgeRecord> findWithBodyById(Long id);
+
+    // 导入去重：按批查已有行键（部门 + 业务名称走联合索引，Sheet 在内存里再比）
+    List<KnowledgeKeyView> findByDepartmentInAndBizNameIn(Collection<String> departments, Collection<String> bizNames);
+
+    // 导入“作废缺失行”：某部门某 Sheet 下已有的全部行键
+    List<KnowledgeKeyView> findByDepartmentAndSheetName(String department, String sheetName);
+
+    // 搜索列表：只取精简列（接口投影，不会 select 任何 @Lob 列）
+    List<KnowledgeSummaryView> findByIdIn(Collection<Long> ids);
+
+    /**
+     * 命中片段：按字段优先级找到第一个包含 kw 的字段，只把命中位置附近的一小段传回来。
+     * 压缩存储的正文（以 packed 开头的 base64）不参与匹配，否则字母、拼音首字母会命中 base64 串；
+     * 这类行回落到 bizName，由 SearchService 解压后再截。
+     */
+    @Query(value = """
+            select t.id as id, t.field as field,
+                   substring(t.txt, greatest(locate(:kw, t.txt) - 20, 1), 100) as snippet
+            from (
+                select x.id as id,
+                       case when locate(:kw, biz_name) > 0 then 'bizName'
+                            when locate(:kw, keywords) > 0 then 'keywords'
+                            when locate(:kw, latest_req) > 0 then 'latestReq'
+                            when locate(:kw, process) > 0 then 'process'
+                            when locate(:kw, penalty) > 0 then 'penalty'
+                            when locate(:kw, basis) > 0 then 'basis'
+                            when locate(:kw, case_text) > 0 then 'caseText'
+                            else 'bizName' end as field,
+                       case when locate(:kw, biz_name) > 0 then biz_name
+                            when locate(:kw, keywords) > 0 then keywords
+                            when locate(:kw, latest_req) > 0 then latest_req
+                            when locate(:kw, process) > 0 then process
+                            when locate(:kw, penalty) > 0 then penalty
+                            when locate(:kw, basis) > 0 then basis
+                            when locate(:kw, case_text) > 0 then case_text
+                            else biz_name end as txt
+                from (
+                    select r.id, r.biz_name, b.keywords, b.latest_req,
+                           case when left(b.process, char_length(:packed)) = :packed then null else b.process end as process,
+                           case when left(b.penalty, char_length(:packed)) = :packed then null else b.penalty end as penalty,
+                           case when left(b.basis, char_length(:packed)) = :packed then null else b.basis end as basis,
+                           case when left(b.case_text, char_length(:packed)) = :packed then null else b.case_text end as case_text
+                    from knowledge_record r join knowledge_record_body b on b.id = r.id
+                    where r.id in (:ids)
+                ) x
+            ) t
+            """, nativeQuery = true)
+    List<KnowledgeSnippetView> findSnippets(@Param("ids") Collection<Long> ids, @Param("kw") String kw,
+                                            @Param("packed") String packedPrefix);
 
 }
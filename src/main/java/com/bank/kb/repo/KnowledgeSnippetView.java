@@ -0,0 +1,10 @@
+package com.bank.kb.repo;
+
+/**
+ * 命中片段：field 为命中的字段名（与实体属性同名），snippet 为数据库端截好的一小段文本。
+ */
+public interface KnowledgeSnippetView {
+    Long getId();
+    String getField();
+    String getSnippet();
+}
@@ -0,0 +1,14 @@
+package com.bank.kb.repo;
+
+import java.time.LocalDate;
+
+/**
+ * 搜索列表用的精简投影：只查表头列，不带任何 @Lob 正文。
+ */
+public interface KnowledgeSummaryView {
+    Long getId();
+    String getBizName();
+    String getCategory();
+    String getDepartment();
+    LocalDate getLatestReqDate();
+}
@@ -0,0 +1,10 @@
+package com.bank.kb.repo;
+
+import com.bank.kb.entity.SynonymEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface SynonymEntryRepo extends JpaRepository<SynonymEntry, Long> {
+    Optional<SynonymEntry> findByTerm(String term);
+}
@@ -0,0 +1,159 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.CompressedTextConverter;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 正文压缩的存量迁移：kb.body.compress 开启后，后台按 id 分批把明文行改写成压缩格式。
+ *
+ * - 每批一个事务，先 for update 锁住这一批再改写，不会覆盖同时导入的新内容
+ * - 直接读写列值（不经实体），内容不变，updatedAt 不动，不触发索引/变更流
+ * - 可随时中断：已压缩的行下次跳过，重启后从头扫一遍即可
+ * - 扫完整张表后在 kb_job_state 记一笔（带当时的 compress-min-chars），之后启动不再扫正文；
+ *   以关闭压缩启动时清掉这笔（期间写入的是明文），min-chars 调小后也重扫
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BodyCompressionJob {
+
+    private static final String[] COLUMNS = {"process", "case_text", "penalty", "basis"};
+    private static final String STATE = "body-compress";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    @Value("${kb.body.compress:false}")
+    private boolean compress;
+
+    @Value("${kb.body.compress-min-chars:512}")
+    private int minChars = 512;
+
+    @Value("${kb.body.migrate-batch:200}")
+    private int batchSize = 200;
+
+    private ExecutorService worker;
+    private volatile boolean stopped;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!compress) {
+            clearDone();
+            return;
+        }
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "kb-body-compress");
+            t.setDaemon(true);
+            return t;
+        });
+        worker.submit(() -> {
+            try {
+                run();
+            } catch (RuntimeException e) {
+                log.error("正文压缩迁移中断，下次启动继续", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        if (worker != null) worker.shutdownNow();
+    }
+
+    /**
+     * 扫完整张正文表，返回改写的行数。
+     */
+    int run() {
+        Integer doneAt = doneMinChars();
+        if (doneAt != null && doneAt <= minChars) {
+            log.info("正文压缩迁移已完成过（compress-min-chars={}），跳过", doneAt);
+            return 0;
+        }
+        CompressedTextConverter codec = new CompressedTextConverter(true, minChars);
+        long t0 = System.currentTimeMillis();
+        long lastId = 0;
+        int scanned = 0;
+        int packed = 0;
+        while (!stopped) {
+            long from = lastId;
+            Batch b = tx.execute(status -> packBatch(codec, from));
+            if (b == null || b.rows() == 0) break;
+            scanned += b.rows();
+            packed += b.packed();
+            lastId = b.lastId();
+        }
+        if (!stopped) markDone();
+        log.info("正文压缩迁移{}：扫描 {} 行，改写 {} 行，耗时 {} ms",
+                stopped ? "已停止" : "完成", scanned, packed, System.currentTimeMillis() - t0);
+        return packed;
+    }
+
+    // ===== 完成标记：kb_job_state 一行，state 为完成时的 compress-min-chars =====
+
+    private void ensureStateTable() {
+        jdbc.execute("create table if not exists kb_job_state (job varchar(64) primary key, state varchar(255))");
+    }
+
+    private Integer doneMinChars() {
+        ensureStateTable();
+        List<String> v = jdbc.queryForList("select state from kb_job_state where job = ?", String.class, STATE);
+        return v.isEmpty() ? null : Integer.valueOf(v.get(0));
+    }
+
+    private void markDone() {
+        ensureStateTable();
+        if (jdbc.update("update kb_job_state set state = ? where job = ?", Integer.toString(minChars), STATE) == 0) {
+            jdbc.update("insert into kb_job_state (job, state) values (?, ?)", STATE, Integer.toString(minChars));
+        }
+    }
+
+    private void clearDone() {
+        ensureStateTable();
+        jdbc.update("delete from kb_job_state where job = ?", STATE);
+    }
+
+    private record Batch(int rows, int packed, long lastId) {}
+
+    private Batch packBatch(CompressedTextConverter codec, long afterId) {
+        List<Object[]> updates = new ArrayList<>();
+        long[] last = {afterId};
+        int[] rows = {0};
+        jdbc.query("select id, " + String.join(", ", COLUMNS) + " from knowledge_record_body"
+                        + " where id > ? order by id limit ? for update",
+                rs -> {
+                    rows[0]++;
+                    last[0] = rs.getLong(1);
+                    Object[] args = new Object[COLUMNS.length + 1];
+                    boolean changed = false;
+                    for (int i = 0; i < COLUMNS.length; i++) {
+                        String raw = rs.getString(i + 2);
+                        String packed = CompressedTextConverter.isPacked(raw) ? raw : codec.convertToDatabaseColumn(raw);
+                        changed |= !Objects.equals(raw, packed);
+                        args[i] = packed;
+                    }
+                    args[COLUMNS.length] = last[0];
+                    if (changed) updates.add(args);
+                },
+                afterId, batchSize);
+        if (!updates.isEmpty()) {
+            jdbc.batchUpdate("update knowledge_record_body set " + String.join(" = ?, ", COLUMNS) + " = ? where id = ?",
+                    updates);
+        }
+        return new Batch(rows[0], updates.size(), last[0]);
+    }
+}
@@ -0,0 +1,249 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import com.bank.kb.repo.KnowledgeRecordRepo;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 知识变更流：下游（前端缓存、二级索引等）按水位增量同步，不再反复拉全量列表。
+ *
+ * - 拉：{@link #changesSince} 按 (updatedAt, id) 正序从水位之后取一批，返回新水位
+ * - 推：{@link #subscribe} 返回 SSE 连接，新增/导入/作废提交后推送精简记录；
+ *   实时推送不带水位（事件无 id、watermark 为 null）：推送时同一时刻更早的事务可能还没提交，
+ *   拿推送里最后一条当水位会跳过它们。水位只来自 {@link #changesSince}（已过 settle 的），
+ *   订阅时带 Last-Event-ID 补发的那一批带 id，浏览器重连会从那里重放；消费方应定期用自己的水位调 /changes 对账
+ *
+ * 推送在单独线程里做，慢客户端不拖住导入；每隔 heartbeat-seconds 发一次注释行保活、顺便清理断开的连接。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChangeFeedService implements MeterBinder {
+
+    /** 推送用的精简记录（正文按 id 调 /api/knowledge/{id} 或 /api/knowledge/changes 取） */
+    public record ChangeView(
+            Long id,
+            String category,
+            String department,
+            String bizName,
+            LocalDate latestReqDate,
+            String status,
+            LocalDateTime updatedAt
+    ) {
+        static ChangeView of(KnowledgeRecord r) {
+            return new ChangeView(r.getId(), r.getCategory(), r.getDepartment(), r.getBizName(),
+                    r.getLatestReqDate(), r.getStatus(), r.getUpdatedAt());
+        }
+    }
+
+    /**
+     * 一批变更。watermark 下次原样带回（没有新变更时等于请求的水位），hasMore 为 true 时应立即再取；
+     * 实时推送的批次 watermark 为 null。
+     */
+    public record ChangeBatch<T>(List<T> items, String watermark, boolean hasMore) {}
+
+    static final String EVENT_CHANGES = "changes";
+
+    // 没有水位时从头取
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final KnowledgeRecordRepo repo;
+
+    /**
+     * 只给出 updatedAt 早于“现在 - settle”的记录：updatedAt 在提交前就定了，留出时间等同一时刻的事务提交。
+     * 正确性依赖“任何写知识记录的事务从定 updatedAt 到提交都短于 settle”：导入批次受
+     * kb.import.batch-timeout-seconds 限制，启动时校验 settle 大于它；页面新增/修改是单条，远短于此。
+     */
+    @Value("${kb.changes.settle-seconds:30}")
+    private long settleSeconds = 30;
+
+    @Value("${kb.import.batch-timeout-seconds:20}")
+    private long importBatchTimeoutSeconds = 20;
+
+    @Value("${kb.changes.max-subscribers:200}")
+    private int maxSubscribers = 200;
+
+    @Value("${kb.changes.stream-timeout-minutes:30}")
+    private long streamTimeoutMinutes = 30;
+
+    @Value("${kb.changes.heartbeat-seconds:30}")
+    private long heartbeatSeconds = 30;
+
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService pusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "kb-change-feed");
+        t.setDaemon(true);
+        return t;
+    });
+    private boolean heartbeatStarted = false;
+
+    @PostConstruct
+    void checkSettleWindow() {
+        if (settleSeconds <= importBatchTimeoutSeconds) {
+            throw new IllegalStateException("kb.changes.settle-seconds（" + settleSeconds
+                    + "）必须大于 kb.import.batch-timeout-seconds（" + importBatchTimeoutSeconds + "），否则变更流会漏掉导入的记录");
+        }
+    }
+
+    /**
+     * @param since 上次返回的 watermark；也接受 ISO 日期/时间（首次同步），为空则从头开始
+     * @throws IllegalArgumentException 水位格式不对
+     */
+    public ChangeBatch<KnowledgeRecord> changesSince(String since, int limit) {
+        SeekCursor.ChangeKey from = parseSince(since);
+        int size = Math.max(1, limit);
+        LocalDateTime until = LocalDateTime.now().minusSeconds(settleSeconds);
+
+        List<KnowledgeRecord> rows = new ArrayList<>(
+                repo.findChangedAfter(from.updatedAt(), from.id(), until, PageRequest.ofSize(size + 1)));
+        boolean hasMore = rows.size() > size;
+        if (hasMore) rows = rows.subList(0, size);
+
+        SeekCursor.ChangeKey next = rows.isEmpty() ? from : keyOf(rows.get(rows.size() - 1));
+        return new ChangeBatch<>(rows, SeekCursor.of(next), hasMore);
+    }
+
+    /**
+     * 建立 SSE 订阅。
+     *
+     * @param lastEventId 重连时浏览器带的 Last-Event-ID（上次收到的水位），有则先补发之后的一批
+     * @throws IllegalStateException 订阅数已满
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new IllegalStateException("变更订阅数已满，请稍后重试");
+        }
+        startHeartbeat();
+
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(streamTimeoutMinutes));
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            ChangeBatch<KnowledgeRecord> backlog = changesSince(lastEventId, 500);
+            if (!backlog.items().isEmpty()) {
+                List<ChangeView> views = backlog.items().stream().map(ChangeView::of).toList();
+                if (!send(emitter, new ChangeBatch<>(views, backlog.watermark(), backlog.hasMore()))) return emitter;
+            }
+        }
+        subscribers.add(emitter);
+        return emitter;
+    }
+
+    /**
+     * 在索引、搜索缓存之后推送（见各自的 @Order）。
+     */
+    @Order(200)
+    @EventListener
+    public void onKnowledgeChanged(KnowledgeChangedEvent event) {
+        if (subscribers.isEmpty() || event.records() == null || event.records().isEmpty()) return;
+
+        List<KnowledgeRecord> sorted = event.records().stream()
+                .filter(r -> r != null && r.getId() != null && r.getUpdatedAt() != null)
+                .sorted(Comparator.comparing(KnowledgeRecord::getUpdatedAt).thenComparing(KnowledgeRecord::getId))
+                .toList();
+        if (sorted.isEmpty()) return;
+
+        List<ChangeView> views = sorted.stream().map(ChangeView::of).toList();
+        ChangeBatch<ChangeView> batch = new ChangeBatch<>(views, null, false);
+        try {
+            pusher.execute(() -> {
+                for (SseEmitter emitter : subscribers) send(emitter, batch);
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("变更推送线程已停止，丢弃 {} 条推送", views.size());
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pusher.shutdownNow();
+        for (SseEmitter emitter : subscribers) emitter.complete();
+        subscribers.clear();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("kb.changes.subscribers", subscribers, List::size)
+                .description("变更流 SSE 订阅数")
+                .register(registry);
+    }
+
+    private synchronized void startHeartbeat() {
+        if (heartbeatStarted) return;
+        heartbeatStarted = true;
+        pusher.scheduleWithFixedDelay(() -> {
+            for (SseEmitter emitter : subscribers) {
+                try {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } catch (IOException | IllegalStateException e) {
+                    drop(emitter, e);
+                }
+            }
+        }, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    private boolean send(SseEmitter emitter, ChangeBatch<ChangeView> batch) {
+        try {
+            SseEmitter.SseEventBuilder event = SseEmitter.event().name(EVENT_CHANGES).data(batch);
+            // 没有水位就不带 id，浏览器保留上一个 Last-Event-ID
+            if (batch.watermark() != null) event.id(batch.watermark());
+            emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            drop(emitter, e);
+            return false;
+        }
+    }
+
+    private void drop(SseEmitter emitter, Exception e) {
+        subscribers.remove(emitter);
+        emitter.completeWithError(e);
+    }
+
+    private static SeekCursor.ChangeKey keyOf(KnowledgeRecord r) {
+        return new SeekCursor.ChangeKey(r.getUpdatedAt(), r.getId());
+    }
+
+    private static SeekCursor.ChangeKey parseSince(String since) {
+        if (since == null || since.isBlank()) return new SeekCursor.ChangeKey(EPOCH, 0);
+        String s = since.trim();
+        // 首次同步可以直接给时间点（含这一刻）
+        try {
+            return new SeekCursor.ChangeKey(s.length() == 10 ? LocalDate.parse(s).atStartOfDay() : LocalDateTime.parse(s), 0);
+        } catch (DateTimeParseException ignored) {
+            return SeekCursor.parseChange(s);
+        }
+    }
+}
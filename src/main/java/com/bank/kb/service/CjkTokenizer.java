@@ -0,0 +1,97 @@
+package com.bank.kb.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * 中文友好的分词器（倒排索引用）：
+ * - 连续汉字：输出单字 + 相邻二字（bigram），例如 “贷款审批” -> 贷 款 审 批 贷款 款审 审批
+ * - 连续字母/数字：整体作为一个词，统一小写，例如 “ATM” -> atm
+ * - 其它字符（标点、空白）作为分隔符
+ */
+public final class CjkTokenizer {
+
+    private static final Pattern KEYWORD_SPLIT = Pattern.compile("[,，、;；\\s]+");
+
+    private CjkTokenizer() {}
+
+    /**
+     * 拆“关键词”列：逗号/顿号/分号/空白分隔，去空。
+     */
+    public static List<String> splitKeywords(String keywords) {
+        if (keywords == null || keywords.isBlank()) return List.of();
+        List<String> out = new ArrayList<>();
+        for (String k : KEYWORD_SPLIT.split(keywords.trim())) {
+            if (!k.isEmpty()) out.add(k);
+        }
+        return out;
+    }
+
+    /**
+     * 建索引时用：把文本切成 unigram + bigram（汉字）以及整词（字母数字）。
+     */
+    public static void tokenize(String text, Consumer<String> sink) {
+        if (text == null || text.isEmpty()) return;
+
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char ch = text.charAt(i);
+            if (isCjk(ch)) {
+                int start = i;
+                while (i < n && isCjk(text.charAt(i))) i++;
+                for (int k = start; k < i; k++) {
+                    sink.accept(String.valueOf(text.charAt(k)));
+                    if (k + 1 < i) sink.accept(text.substring(k, k + 2));
+                }
+            } else if (isWordChar(ch)) {
+                int start = i;
+                while (i < n && isWordChar(text.charAt(i))) i++;
+                sink.accept(text.substring(start, i).toLowerCase());
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * 查询时用：汉字片段只取 bigram（单字片段取 unigram），保证“所有词都命中同一字段”≈ 原来的 like '%kw%'。
+     */
+    public static List<String> queryTerms(String q) {
+        if (q == null || q.isBlank()) return List.of();
+
+        LinkedHashSet<String> out = new LinkedHashSet<>();
+        int n = q.length();
+        int i = 0;
+        while (i < n) {
+            char ch = q.charAt(i);
+            if (isCjk(ch)) {
+                int start = i;
+                while (i < n && isCjk(q.charAt(i))) i++;
+                if (i - start == 1) {
+                    out.add(String.valueOf(ch));
+                } else {
+                    for (int k = start; k + 1 < i; k++) out.add(q.substring(k, k + 2));
+                }
+            } else if (isWordChar(ch)) {
+                int start = i;
+                while (i < n && isWordChar(q.charAt(i))) i++;
+                out.add(q.substring(start, i).toLowerCase());
+            } else {
+                i++;
+            }
+        }
+        return new ArrayList<>(out);
+    }
+
+    static boolean isCjk(char ch) {
+        return Character.isIdeographic(ch);
+    }
+
+    static boolean isWordChar(char ch) {
+        return Character.isLetterOrDigit(ch) && !Character.isIdeographic(ch);
+    }
+}
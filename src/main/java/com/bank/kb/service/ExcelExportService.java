@@ -0,0 +1,133 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import com.bank.kb.repo.KnowledgeRecordRepo;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 导出为 Excel（内置模板格式，可原样导回）：
+ *
+ * - 不带 q：按分类/部门过滤，数据库游标逐行读，写完一行就从持久化上下文里摘掉
+ * - 带 q：和 /api/search 一样的检索（含同义词），按相关度顺序每 500 个 id 回表一次
+ *
+ * 写入走 {@link TemplateWorkbookWriter}（SXSSF），堆上只有每个 Sheet 最近 window 行。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ExcelExportService {
+
+    /** 导出范围：ids 为 null 表示按分类/部门导出全部，否则为检索命中的 id（相关度顺序） */
+    public record ExportPlan(String category, String department, List<Long> ids) {
+
+        public String mode() {
+            return ids == null ? "all" : "search";
+        }
+    }
+
+    private static final String TEMPLATE = "static/kb_stystem_template.xlsx";
+    private static final int ID_BATCH = 500;
+
+    private final KnowledgeRecordRepo repo;
+    private final SearchService searchService;
+    private final EntityManager em;
+    private final TransactionTemplate tx;
+    private final MeterRegistry meters;
+
+    /** SXSSF 每个 Sheet 留在内存里的行数 */
+    @Value("${kb.export.window-rows:200}")
+    private int windowRows = 200;
+
+    /** 检索结果最多导出的条数 */
+    @Value("${kb.export.max-search-rows:100000}")
+    private int maxSearchRows = 100000;
+
+    /**
+     * 先定范围（检索在这一步做完），出错能在开始写响应之前报出来。
+     *
+     * @throws IllegalStateException 带 q 但索引还在构建
+     */
+    public ExportPlan plan(String q, String category, String department) {
+        String cat = SearchService.normCategory(category);
+        String dept = SearchService.normDepartment(department);
+        if (q == null || q.isBlank()) return new ExportPlan(cat, dept, null);
+        return new ExportPlan(cat, dept, searchService.matchingIds(q, cat, dept, maxSearchRows));
+    }
+
+    /**
+     * 写出整个工作簿，返回导出行数。
+     */
+    public int write(ExportPlan plan, OutputStream out) throws IOException {
+        long t0 = System.nanoTime();
+        TemplateWorkbookWriter w;
+        try (var tpl = new ClassPathResource(TEMPLATE).getInputStream()) {
+            w = new TemplateWorkbookWriter(tpl, windowRows);
+        }
+        try (TemplateWorkbookWriter writer = w) {
+            tx.execute(status -> {
+                if (plan.ids() == null) writeAll(plan, writer);
+                else writeHits(plan.ids(), writer);
+                return null;
+            });
+            writer.finish(out);
+
+            if (writer.truncated() > 0) {
+                log.warn("导出时有 {} 个单元格超过 Excel 上限被截断", writer.truncated());
+            }
+            recordMetrics(plan.mode(), writer.rows(), System.nanoTime() - t0);
+            return writer.rows();
+        }
+    }
+
+    private void writeAll(ExportPlan plan, TemplateWorkbookWriter writer) {
+        try (Stream<KnowledgeRecord> rows = repo.streamForExport(plan.category(), plan.department())) {
+            rows.forEach(r -> {
+                writer.write(r);
+                em.detach(r);
+            });
+        }
+    }
+
+    private void writeHits(List<Long> ids, TemplateWorkbookWriter writer) {
+        for (int from = 0; from < ids.size(); from += ID_BATCH) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + ID_BATCH));
+            Map<Long, KnowledgeRecord> byId = new HashMap<>();
+            for (KnowledgeRecord r : repo.findWithBodyByIdIn(chunk)) byId.put(r.getId(), r);
+            for (Long id : chunk) {
+                KnowledgeRecord r = byId.get(id);
+                if (r != null) writer.write(r);
+            }
+            em.clear();
+        }
+    }
+
+    private void recordMetrics(String mode, int rows, long nanos) {
+        Timer.builder("kb.export")
+                .description("导出 Excel 耗时")
+                .tag("mode", mode)
+                .register(meters)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("kb.export.rows")
+                .description("每次导出的行数")
+                .tag("mode", mode)
+                .register(meters)
+                .record(rows);
+    }
+}
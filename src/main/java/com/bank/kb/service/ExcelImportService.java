@@ -2,164 +2,651 @@ package com.bank.kb.service;
 
 import com.bank.kb.config.DeptCategoryMapping;
 import com.bank.kb.entity.KnowledgeRecord;
+import com.bank.kb.repo.KnowledgeKeyView;
 import com.bank.kb.repo.KnowledgeRecordRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
 
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
 import java.util.*;
-
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Excel 导入：按 SAX 事件流逐行读取（不构建整本 XSSFWorkbook），
+ * 每攒满 {@link #BATCH_SIZE} 行在一个事务里 saveAll 一次，堆内存与文件大小无关。
+ * 多个 Sheet 在独立的解析线程池里并行解析、映射，写库仍在导入线程按 Sheet 顺序进行。
+ * 上传文件由 {@link ImportJobService} 先落盘，再在导入线程池里调用这里。
+ *
+ * 重复导入是幂等的：行键 = 部门 + Sheet + 业务名称，正文各字段算一个内容指纹；
+ * 每批先按行键批量查出已有记录，指纹相同的不写库，指纹变了的原地更新，其余新增。
+ *
+ * 指标：kb.import（整次耗时）、kb.import.phase{phase=parse|map|persist}、kb.import.rows{result=...}、
+ * kb.import.throughput（行/秒）
+ */
 @Service
 @RequiredArgsConstructor
 public class ExcelImportService {
 
+    private static final int BATCH_SIZE = 500;
+    private static final int HEADER_SCAN_ROWS = 30;
+    private static final String KEY_SEP = "\u0001";
+    private static final String STATUS_RETIRED = "作废";
+    // 每个 Sheet 解析结果队列的容量（行）
+    private static final int FEED_CAPACITY = BATCH_SIZE * 2;
+    // 队列里的标记：空业务名称的行 / Sheet 结束
+    private static final KnowledgeRecord SKIPPED = new KnowledgeRecord();
+    private static final KnowledgeRecord END = new KnowledgeRecord();
+
     private final KnowledgeRecordRepo repo;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+    private final MeterRegistry meters;
+
+    /**
+     * 一批写入事务的时限（秒）：updatedAt 在事务里就定了，提交晚于 updatedAt + kb.changes.settle-seconds 的行
+     * 会被变更流的水位越过。超时的批次回滚、本次导入失败；必须小于 settle-seconds（ChangeFeedService 启动时校验）。
+     */
+    @Value("${kb.import.batch-timeout-seconds:20}")
+    private long batchTimeoutSeconds = 20;
+
+    /** 并行解析 Sheet 的线程数，0 表示按 CPU 核数 */
+    @Value("${kb.import.parse-threads:0}")
+    private int parseThreads = 0;
 
-    // 用于“提醒/校验”，真正匹配表头时会 normalize
+    // 模板列（归一化后的表头）；下标即列计划里的槽位号，和下面的 COL_* 一一对应
     private static final List<String> HEADERS = List.of(
             "分类", "部门", "业务名称", "办理流程", "最新要求下达时间",
             "最新要求", "案例", "扣罚标准", "制度依据", "关键词",
             "维护人", "更新时间", "状态"
     );
+    private static final int COL_CATEGORY = 0;
+    private static final int COL_DEPT = 1;
+    private static final int COL_BIZ_NAME = 2;
+    private static final int COL_PROCESS = 3;
+    private static final int COL_LATEST_DATE = 4;
+    private static final int COL_LATEST_REQ = 5;
+    private static final int COL_CASE = 6;
+    private static final int COL_PENALTY = 7;
+    private static final int COL_BASIS = 8;
+    private static final int COL_KEYWORDS = 9;
+    private static final int COL_OWNER = 10;
+    private static final int COL_UPDATE_TIME = 11;
+    private static final int COL_STATUS = 12;
+
+    private static final Map<String, Integer> HEADER_SLOT;
+    static {
+        Map<String, Integer> m = new HashMap<>();
+        for (int i = 0; i < HEADERS.size(); i++) m.put(HEADERS.get(i), i);
+        HEADER_SLOT = Map.copyOf(m);
+    }
+
+    public record ImportResult(int inserted, int updated, int unchanged, int skipped, int retired,
+                               List<String> warnings) {}
+
+    public ImportResult importExcel(Path xlsx, String sourceFile, String uploaderDept) {
+        return importExcel(xlsx, sourceFile, uploaderDept, false, ImportProgress.NONE);
+    }
+
+    /**
+     * @param retireMissing 为 true 时，本次文件涉及的（部门, Sheet）下、新文件里已经没有的行标记为“作废”
+     */
+    public ImportResult importExcel(Path xlsx, String sourceFile, String uploaderDept,
+                                    boolean retireMissing, ImportProgress progress) {
+        ImportContext ctx = new ImportContext(progress);
+        long t0 = System.nanoTime();
+        boolean ok = false;
+
+        try (OPCPackage pkg = OPCPackage.open(xlsx.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            List<SheetFeed> feeds = new ArrayList<>();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                InputStream in = sheets.next();
+                feeds.add(new SheetFeed(sheets.getSheetName(), in));
+            }
+
+            // 各 Sheet 并行解析 + 映射；本线程按 Sheet 顺序逐个消费、分批写库，行号/Sheet/提醒的顺序与串行时一致
+            ExecutorService pool = newParsePool(feeds.size());
+            try {
+                for (SheetFeed f : feeds) {
+                    pool.execute(() -> parseSheet(f, styles, strings, sourceFile, uploaderDept));
+                }
+                for (SheetFeed f : feeds) ctx.drain(f);
+            } finally {
+                pool.shutdownNow();
+                pool.awaitTermination(30, TimeUnit.SECONDS);
+                for (SheetFeed f : feeds) closeQuietly(f.in);
+            }
+
+            ctx.flush();
+            if (retireMissing) ctx.retireMissing();
+            ok = true;
+        } catch (Exception e) {
+            throw new RuntimeException("导入失败：" + e.getMessage(), e);
+        } finally {
+            recordMetrics(ctx, System.nanoTime() - t0, ok);
+        }
+
+        // 可选：提示缺少哪些列（不阻断导入）
+        // warnings.addAll(validateMissingHeaders(plan));
+
+        return new ImportResult(ctx.inserted, ctx.updated, ctx.unchanged, ctx.skipped, ctx.retired, ctx.warnings);
+    }
+
+    private ExecutorService newParsePool(int sheets) {
+        int threads = Math.max(1, Math.min(sheets,
+                parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors()));
+        AtomicInteger seq = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "kb-import-parse-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 解析线程：SAX 读一个 Sheet，映射好的行（已算好内容指纹）放进该 Sheet 的有界队列，最后放 END。
+     */
+    private static void parseSheet(SheetFeed feed, StylesTable styles, ReadOnlySharedStringsTable strings,
+                                   String sourceFile, String uploaderDept) {
+        try (InputStream in = feed.in) {
+            SheetRowHandler handler = new SheetRowHandler(feed, sourceFile, uploaderDept);
+
+            // DataFormatter 有内部缓存，不是线程安全的：每个 Sheet 一个
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, handler, new DataFormatter(), false));
+            parser.parse(new InputSource(in));
 
-    public record ImportResult(int inserted, int skipped, List<String> warnings) {}
+            handler.finish();
+        } catch (Exception e) {
+            feed.error = e;
+        } finally {
+            try {
+                feed.rows.put(END);
+            } catch (InterruptedException ignored) {
+                // 导入已中止，没有人再等这个 Sheet
+            }
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * 各阶段耗时：map = 单元格 -> 实体，persist = 查重 + 写库 + 作废，其余都算 SAX 解析（parse）。
+     * 多个 Sheet 并行时 map 是各解析线程累加，parse 取剩余的墙钟时间，只作趋势参考。
+     */
+    private void recordMetrics(ImportContext ctx, long totalNanos, boolean ok) {
+        long parseNanos = Math.max(0, totalNanos - ctx.mapNanos - ctx.persistNanos);
+        phaseTimer("parse").record(parseNanos, TimeUnit.NANOSECONDS);
+        phaseTimer("map").record(ctx.mapNanos, TimeUnit.NANOSECONDS);
+        phaseTimer("persist").record(ctx.persistNanos, TimeUnit.NANOSECONDS);
+
+        Timer.builder("kb.import")
+                .description("整个文件导入耗时")
+                .tag("outcome", ok ? "success" : "failure")
+                .register(meters)
+                .record(totalNanos, TimeUnit.NANOSECONDS);
+
+        rowCounter("inserted").increment(ctx.inserted);
+        rowCounter("updated").increment(ctx.updated);
+        rowCounter("unchanged").increment(ctx.unchanged);
+        rowCounter("skipped").increment(ctx.skipped);
+        rowCounter("retired").increment(ctx.retired);
+
+        int rows = ctx.inserted + ctx.updated + ctx.unchanged + ctx.skipped;
+        if (ok && rows > 0 && totalNanos > 0) {
+            DistributionSummary.builder("kb.import.throughput")
+                    .description("导入速度")
+                    .baseUnit("rows/s")
+                    .register(meters)
+                    .record(rows * 1e9 / totalNanos);
+        }
+    }
+
+    private Timer phaseTimer(String phase) {
+        return Timer.builder("kb.import.phase")
+                .description("导入各阶段耗时")
+                .tag("phase", phase)
+                .register(meters);
+    }
+
+    private Counter rowCounter(String result) {
+        return Counter.builder("kb.import.rows")
+                .description("导入行数（按处理结果）")
+                .tag("result", result)
+                .register(meters);
+    }
 
-    public ImportResult importExcel(MultipartFile file, String uploaderDept) {
+    /**
+     * 一次导入的累计状态 + 待写入批次。
+     */
+    private final class ImportContext {
+        final ImportProgress progress;
+        final List<String> warnings = new ArrayList<>();
+        final List<KnowledgeRecord> batch = new ArrayList<>(BATCH_SIZE);
+        // 本次导入命中/新增的记录 id，以及涉及的（部门, Sheet），用于作废缺失行
+        final Set<Long> seenIds = new HashSet<>();
+        final Map<String, String[]> seenSheets = new LinkedHashMap<>();
         int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
         int skipped = 0;
-        List<String> warnings = new ArrayList<>();
+        int retired = 0;
+        long mapNanos = 0;
+        long persistNanos = 0;
 
-        try (InputStream in = file.getInputStream();
-             Workbook wb = new XSSFWorkbook(in)) {
+        ImportContext(ImportProgress progress) {
+            this.progress = progress;
+        }
 
-            DataFormatter fmt = new DataFormatter();
+        /**
+         * 消费一个 Sheet 的解析结果直到 END；解析线程出错时在这里抛出，中止整次导入。
+         */
+        void drain(SheetFeed feed) throws Exception {
+            while (true) {
+                KnowledgeRecord r = feed.rows.take();
+                if (r == END) break;
+                if (r == SKIPPED) skip();
+                else add(r);
+            }
+            if (feed.error != null) throw feed.error;
+            mapNanos += feed.mapNanos;
+            for (String w : feed.warnings) warn(w);
+        }
 
-            for (int s = 0; s < wb.getNumberOfSheets(); s++) {
-                Sheet sheet = wb.getSheetAt(s);
-                if (sheet == null) continue;
+        void add(KnowledgeRecord rec) {
+            progress.rowProcessed();
+            if (rec.getContentHash() == null) rec.setContentHash(contentHash(rec));
+            seenSheets.putIfAbsent(rec.getDepartment() + KEY_SEP + rec.getSheetName(),
+                    new String[]{rec.getDepartment(), rec.getSheetName()});
+            batch.add(rec);
+            if (batch.size() >= BATCH_SIZE) flush();
+        }
 
-                // ✅ 找表头行：扫描前 30 行，找到包含“业务名称”的那一行
-                int headerRowIndex = findHeaderRowIndex(sheet, fmt);
-                if (headerRowIndex < 0) {
-                    warnings.add("Sheet【" + sheet.getSheetName() + "】未找到表头行（需要包含“业务名称”），已跳过。");
-                    continue;
-                }
-                Row headerRow = sheet.getRow(headerRowIndex);
-                if (headerRow == null) {
-                    warnings.add("Sheet【" + sheet.getSheetName() + "】表头行为空，已跳过。");
-                    continue;
-                }
+        void skip() {
+            progress.rowProcessed();
+            progress.skipped();
+            skipped++;
+        }
 
-                // ✅ 建立“表头 -> 列号”映射（支持：业务名称（必填）/ 关键词* / 最新要求下达时间(可空) 等）
-                Map<String, Integer> col = new HashMap<>();
-                for (int c = headerRow.getFirstCellNum(); c < headerRow.getLastCellNum(); c++) {
-                    if (c < 0) continue;
-                    Cell cell = headerRow.getCell(c);
-                    if (cell == null) continue;
+        void warn(String msg) {
+            warnings.add(msg);
+            progress.warning(msg);
+        }
 
-                    String name = fmt.formatCellValue(cell).trim();
-                    if (name.isBlank()) continue;
+        /**
+         * 一批一个事务：按行键批量查已有记录 -> 新增 / 原地更新 / 跳过，提交后把写过的记录刷进搜索索引。
+         */
+        void flush() {
+            if (batch.isEmpty()) return;
+            long t0 = System.nanoTime();
+
+            Set<String> depts = new HashSet<>();
+            Set<String> names = new HashSet<>();
+            for (KnowledgeRecord r : batch) {
+                depts.add(r.getDepartment());
+                names.add(r.getBizName());
+            }
 
-                    String normalized = normalizeHeader(name);
-                    if (!normalized.isBlank()) {
-                        col.put(normalized, c);
-                    }
+            List<KnowledgeRecord> written = tx.execute(status -> {
+                long started = System.nanoTime();
+                // 同一行键有多条历史记录时，以 id 最大的为准
+                Map<String, KnowledgeKeyView> existing = new HashMap<>();
+                for (KnowledgeKeyView k : repo.findByDepartmentInAndBizNameIn(depts, names)) {
+                    existing.merge(rowKey(k.getDepartment(), k.getSheetName(), k.getBizName()), k,
+                            (a, b) -> a.getId() > b.getId() ? a : b);
                 }
 
-                // 最少必须有“业务名称”
-                if (!col.containsKey("业务名称")) {
-                    warnings.add("Sheet【" + sheet.getSheetName() + "】缺少表头“业务名称”，已跳过。");
-                    continue;
+                // 同一文件里重复的行键：后出现的覆盖先出现的
+                Map<String, KnowledgeRecord> inserts = new LinkedHashMap<>();
+                Map<Long, KnowledgeRecord> updates = new LinkedHashMap<>();
+                int same = 0;
+                int dup = 0;
+                for (KnowledgeRecord r : batch) {
+                    String key = rowKey(r.getDepartment(), r.getSheetName(), r.getBizName());
+                    KnowledgeKeyView k = existing.get(key);
+                    // 页面新增的记录没有 Sheet 名，导出后再导回来按 部门+业务名称 认领
+                    if (k == null) k = existing.get(rowKey(r.getDepartment(), null, r.getBizName()));
+                    if (k == null) {
+                        if (inserts.put(key, r) != null) dup++;
+                    } else if (r.getContentHash().equals(k.getContentHash()) && !updates.containsKey(k.getId())) {
+                        seenIds.add(k.getId());
+                        same++;
+                    } else {
+                        seenIds.add(k.getId());
+                        if (updates.put(k.getId(), r) != null) dup++;
+                    }
                 }
 
-                // 你模板里如果“关键词”是必填，也可以强校验：
-                // if (!col.containsKey("关键词")) warnings.add("Sheet【...】缺少表头“关键词”，将按空导入。");
-
-                int last = sheet.getLastRowNum();
-                int dataStart = headerRowIndex + 1;
-
-                for (int r = dataStart; r <= last; r++) {
-                    Row row = sheet.getRow(r);
-                    if (row == null) continue;
-
-                    // ✅ 判空：整行都空就跳过（避免尾部空行算 skipped）
-                    if (isRowBlank(row, fmt)) continue;
-
-                    String bizName = v(row, col, "业务名称", fmt);
-                    if (bizName.isBlank()) { skipped++; continue; }
-
-                    String dept = v(row, col, "部门", fmt);
-                    if (dept.isBlank()) dept = (uploaderDept != null ? uploaderDept : "");
-
-                    String category = v(row, col, "分类", fmt);
-                    if (category.isBlank()) category = DeptCategoryMapping.categoryOf(dept);
-
-                    KnowledgeRecord rec = KnowledgeRecord.builder()
-                            .category(category)
-                            .department(dept)
-                            .bizName(bizName)
-                            .process(v(row, col, "办理流程", fmt))
-                            .latestReqDate(parseDate(v(row, col, "最新要求下达时间", fmt)))
-                            .latestReq(v(row, col, "最新要求", fmt))
-                            .caseText(v(row, col, "案例", fmt))
-                            .penalty(v(row, col, "扣罚标准", fmt))
-                            .basis(v(row, col, "制度依据", fmt))
-                            .keywords(v(row, col, "关键词", fmt))
-                            .owner(v(row, col, "维护人", fmt))
-                            .updateTime(v(row, col, "更新时间", fmt))
-                            .status(blankToDefault(v(row, col, "状态", fmt), "有效"))
-                            .sourceFile(file.getOriginalFilename())
-                            .sheetName(sheet.getSheetName())
-                            .rowNo(r + 1) // Excel 直观看的行号（从1开始）
-                            .build();
-
-                    repo.save(rec);
-                    inserted++;
+                List<KnowledgeRecord> out = new ArrayList<>(repo.saveAll(inserts.values()));
+                if (!updates.isEmpty()) {
+                    List<KnowledgeRecord> targets = repo.findWithBodyByIdIn(updates.keySet());
+                    for (KnowledgeRecord t : targets) copyContent(updates.get(t.getId()), t);
+                    out.addAll(repo.saveAll(targets));
                 }
+                for (KnowledgeRecord r : out) seenIds.add(r.getId());
+
+                inserted += inserts.size();
+                updated += updates.size();
+                unchanged += same;
+                skipped += dup;
+                progress.inserted(inserts.size());
+                progress.updated(updates.size());
+                progress.unchanged(same);
+                for (int i = 0; i < dup; i++) progress.skipped();
+                checkDeadline(started);
+                return out;
+            });
+
+            batch.clear();
+            if (written != null && !written.isEmpty()) {
+                events.publishEvent(new KnowledgeChangedEvent(written));
             }
+            persistNanos += System.nanoTime() - t0;
+        }
 
-        } catch (Exception e) {
-            throw new RuntimeException("导入失败：" + e.getMessage(), e);
+        /**
+         * 批事务收尾：先把改动刷到库（@PreUpdate 在这里定 updatedAt），再看用时；超过 batch-timeout-seconds
+         * 就抛异常回滚，不提交可能已落在变更流 settle 窗口之外的行。
+         */
+        private void checkDeadline(long started) {
+            repo.flush();
+            long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            if (ms > TimeUnit.SECONDS.toMillis(batchTimeoutSeconds)) {
+                throw new IllegalStateException("导入批次写入超时（" + ms + " ms，上限 " + batchTimeoutSeconds + " s），本批已回滚，请稍后重试");
+            }
         }
 
-        // 可选：提示缺少哪些列（不阻断导入）
-        // warnings.addAll(validateMissingHeaders(col));
+        /**
+         * 本次文件涉及的（部门, Sheet）下、这次没有出现的有效行，标记为“作废”。
+         */
+        void retireMissing() {
+            long t0 = System.nanoTime();
+            for (String[] ds : seenSheets.values()) {
+                List<Long> ids = new ArrayList<>();
+                for (KnowledgeKeyView k : repo.findByDepartmentAndSheetName(ds[0], ds[1])) {
+                    if (!seenIds.contains(k.getId()) && !STATUS_RETIRED.equals(k.getStatus())) ids.add(k.getId());
+                }
 
-        return new ImportResult(inserted, skipped, warnings);
+                for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                    List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE));
+                    List<KnowledgeRecord> saved = tx.execute(status -> {
+                        long started = System.nanoTime();
+                        List<KnowledgeRecord> recs = repo.findWithBodyByIdIn(chunk);
+                        recs.forEach(r -> r.setStatus(STATUS_RETIRED));
+                        List<KnowledgeRecord> out = repo.saveAll(recs);
+                        checkDeadline(started);
+                        return out;
+                    });
+                    if (saved != null && !saved.isEmpty()) {
+                        retired += saved.size();
+                        progress.retired(saved.size());
+                        events.publishEvent(new KnowledgeChangedEvent(saved));
+                    }
+                }
+            }
+            persistNanos += System.nanoTime() - t0;
+        }
     }
 
     /**
-     * ✅ 扫描前 30 行，找到“业务名称”所在行，作为表头行。
-     * 适配：第1行是“填写说明”的模板（合并单元格），真正表头在第2行。
+     * 一个 Sheet 的解析结果流：解析线程按行 put，导入线程按 Sheet 顺序 take。
+     * 队列有界，跑在前面的 Sheet 攒满就阻塞，内存占用不随文件大小增长。
+     * warnings / mapNanos / error 由解析线程写、导入线程在取到 END 之后读（队列的 put/take 保证可见性）。
      */
-    private static int findHeaderRowIndex(Sheet sheet, DataFormatter fmt) {
-        int first = sheet.getFirstRowNum();
-        int last = Math.min(sheet.getLastRowNum(), first + 30);
+    private static final class SheetFeed {
+        final String sheetName;
+        final InputStream in;
+        final BlockingQueue<KnowledgeRecord> rows = new ArrayBlockingQueue<>(FEED_CAPACITY);
+        final List<String> warnings = new ArrayList<>();
+        long mapNanos;
+        Exception error;
+
+        SheetFeed(String sheetName, InputStream in) {
+            this.sheetName = sheetName;
+            this.in = in;
+        }
 
-        for (int r = first; r <= last; r++) {
-            Row row = sheet.getRow(r);
-            if (row == null) continue;
+        void put(KnowledgeRecord r) {
+            try {
+                rows.put(r);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("导入已中止");
+            }
+        }
+    }
 
-            short fc = row.getFirstCellNum();
-            short lc = row.getLastCellNum();
-            if (fc < 0 || lc < 0) continue;
+    /**
+     * 单个 Sheet 的行回调：先在前 30 行里找表头（包含“业务名称”的那一行），之后逐行映射。
+     * 适配：第1行是“填写说明”的模板（合并单元格），真正表头在第2行。
+     *
+     * 找到表头后编成“列计划”：槽位号（COL_*）-> Excel 列号，逐行映射只做数组下标读取；
+     * 单元格值入数组时就 trim 一次，之后判空、取值都不再复制字符串。
+     */
+    private static final class SheetRowHandler implements SheetContentsHandler {
+        private final SheetFeed feed;
+        private final String sheetName;
+        private final String sourceFile;
+        private final String uploaderDept;
+
+        private String[] cells = new String[32];
+        private int maxCol = -1;
+        private int firstRow = -1;
+
+        // 列计划：plan[COL_*] = 列号，-1 表示没有这一列（支持：业务名称（必填）/ 关键词* / 最新要求下达时间(可空) 等）
+        private int[] plan;
+        private boolean headerMissing = false;
+
+        SheetRowHandler(SheetFeed feed, String sourceFile, String uploaderDept) {
+            this.feed = feed;
+            this.sheetName = feed.sheetName;
+            this.sourceFile = sourceFile;
+            this.uploaderDept = uploaderDept;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            if (firstRow < 0) firstRow = rowNum;
+            if (maxCol >= 0) Arrays.fill(cells, 0, maxCol + 1, null);
+            maxCol = -1;
+        }
 
-            for (int c = fc; c < lc; c++) {
-                Cell cell = row.getCell(c);
-                if (cell == null) continue;
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (cellReference == null || formattedValue == null) return;
+            int c = columnIndex(cellReference);
+            if (c < 0) return;
+            if (c >= cells.length) cells = Arrays.copyOf(cells, Math.max(c + 1, cells.length * 2));
+            cells[c] = formattedValue.trim();
+            if (c > maxCol) maxCol = c;
+        }
 
-                String normalized = normalizeHeader(fmt.formatCellValue(cell));
-                if ("业务名称".equals(normalized)) {
-                    return r;
+        @Override
+        public void endRow(int rowNum) {
+            if (plan == null) {
+                if (headerMissing) return;
+                if (rowNum > firstRow + HEADER_SCAN_ROWS) {
+                    headerMissing = true;
+                    return;
                 }
+                tryHeader();
+                return;
+            }
+
+            // ✅ 判空：整行都空就跳过（避免尾部空行算 skipped）
+            if (isRowBlank(cells, maxCol)) return;
+
+            long t0 = System.nanoTime();
+            String bizName = v(COL_BIZ_NAME);
+            if (bizName.isEmpty()) { feed.put(SKIPPED); return; }
+
+            String dept = v(COL_DEPT);
+            if (dept.isEmpty()) dept = (uploaderDept != null ? uploaderDept : "");
+
+            String category = v(COL_CATEGORY);
+            if (category.isEmpty()) category = DeptCategoryMapping.categoryOf(dept);
+
+            KnowledgeRecord rec = KnowledgeRecord.builder()
+                    .category(category)
+                    .department(dept)
+                    .bizName(bizName)
+                    .process(v(COL_PROCESS))
+                    .latestReqDate(parseDate(v(COL_LATEST_DATE)))
+                    .latestReq(v(COL_LATEST_REQ))
+                    .caseText(v(COL_CASE))
+                    .penalty(v(COL_PENALTY))
+                    .basis(v(COL_BASIS))
+                    .keywords(v(COL_KEYWORDS))
+                    .owner(v(COL_OWNER))
+                    .updateTime(v(COL_UPDATE_TIME))
+                    .status(blankToDefault(v(COL_STATUS), "有效"))
+                    .sourceFile(sourceFile)
+                    .sheetName(sheetName)
+                    .rowNo(rowNum + 1) // Excel 直观看的行号（从1开始）
+                    .build();
+            rec.setContentHash(contentHash(rec));
+            feed.mapNanos += System.nanoTime() - t0;
+
+            feed.put(rec);
+        }
+
+        void finish() {
+            if (plan == null) {
+                feed.warnings.add("Sheet【" + sheetName + "】未找到表头行（需要包含“业务名称”），已跳过。");
             }
         }
-        return -1;
+
+        private void tryHeader() {
+            int[] found = new int[HEADERS.size()];
+            Arrays.fill(found, -1);
+            for (int c = 0; c <= maxCol; c++) {
+                String name = cells[c];
+                if (name == null || name.isEmpty()) continue;
+
+                Integer slot = HEADER_SLOT.get(normalizeHeader(name));
+                if (slot != null) found[slot] = c;
+            }
+            // 最少必须有“业务名称”
+            if (found[COL_BIZ_NAME] >= 0) plan = found;
+
+            // 你模板里如果“关键词”是必填，也可以强校验：
+            // if (plan[COL_KEYWORDS] < 0) warnings.add("Sheet【...】缺少表头“关键词”，将按空导入。");
+        }
+
+        private String v(int slot) {
+            int idx = plan[slot];
+            if (idx < 0 || idx > maxCol) return "";
+            String s = cells[idx];
+            return s == null ? "" : s;
+        }
+    }
+
+    /**
+     * 表头（任意写法）对应的槽位号，不是模板列返回 -1；导出按模板表头回填时用，保证导出的文件能原样导回。
+     */
+    static int headerSlot(String header) {
+        Integer slot = HEADER_SLOT.get(normalizeHeader(header));
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * 记录在某个槽位上的单元格文本，和导入时各列的取值一一对应（日期写成 yyyy-MM-dd）。
+     */
+    static String slotValue(KnowledgeRecord r, int slot) {
+        return switch (slot) {
+            case COL_CATEGORY -> r.getCategory();
+            case COL_DEPT -> r.getDepartment();
+            case COL_BIZ_NAME -> r.getBizName();
+            case COL_PROCESS -> r.getProcess();
+            case COL_LATEST_DATE -> r.getLatestReqDate() == null ? null : r.getLatestReqDate().toString();
+            case COL_LATEST_REQ -> r.getLatestReq();
+            case COL_CASE -> r.getCaseText();
+            case COL_PENALTY -> r.getPenalty();
+            case COL_BASIS -> r.getBasis();
+            case COL_KEYWORDS -> r.getKeywords();
+            case COL_OWNER -> r.getOwner();
+            case COL_UPDATE_TIME -> r.getUpdateTime();
+            case COL_STATUS -> r.getStatus();
+            default -> null;
+        };
+    }
+
+    static String rowKey(String dept, String sheet, String bizName) {
+        return nz(dept) + KEY_SEP + nz(sheet) + KEY_SEP + nz(bizName);
+    }
+
+    /**
+     * 内容指纹：正文各字段（不含来源文件/行号）拼接后取 SHA-256。
+     */
+    static String contentHash(KnowledgeRecord r) {
+        String joined = String.join(KEY_SEP,
+                nz(r.getCategory()), nz(r.getProcess()),
+                r.getLatestReqDate() == null ? "" : r.getLatestReqDate().toString(),
+                nz(r.getLatestReq()), nz(r.getCaseText()), nz(r.getPenalty()), nz(r.getBasis()),
+                nz(r.getKeywords()), nz(r.getOwner()), nz(r.getUpdateTime()), nz(r.getStatus()));
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(joined.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** 行键不变的字段（部门、Sheet、业务名称）保留，其余按新文件覆盖 */
+    private static void copyContent(KnowledgeRecord from, KnowledgeRecord to) {
+        to.setCategory(from.getCategory());
+        to.setProcess(from.getProcess());
+        to.setLatestReqDate(from.getLatestReqDate());
+        to.setLatestReq(from.getLatestReq());
+        to.setCaseText(from.getCaseText());
+        to.setPenalty(from.getPenalty());
+        to.setBasis(from.getBasis());
+        to.setKeywords(from.getKeywords());
+        to.setOwner(from.getOwner());
+        to.setUpdateTime(from.getUpdateTime());
+        to.setStatus(from.getStatus());
+        to.setSourceFile(from.getSourceFile());
+        to.setRowNo(from.getRowNo());
+        to.setContentHash(from.getContentHash());
+    }
+
+    private static String nz(String s) {
+        return s == null ? "" : s;
     }
 
     /**
@@ -167,75 +654,118 @@ public class ExcelImportService {
      * - 去掉中英文括号内容：业务名称（必填） -> 业务名称
      * - 去掉星号：关键词* -> 关键词
      * - 去掉空格/换行
+     *
+     * 手写扫描代替 replaceAll（每次调用都要编译正则）；先去全角括号再去半角括号，和原来的顺序一致。
      */
-    private static String normalizeHeader(String raw) {
-        if (raw == null) return "";
-        String s = raw.trim();
-        if (s.isBlank()) return "";
-
-        s = s.replace("\n", "").replace("\r", "").trim();
-        s = s.replaceAll("（.*?）", "");
-        s = s.replaceAll("\\(.*?\\)", "");
-        s = s.replaceAll("\\*", "");
-        s = s.replaceAll("\\s+", "");
-        return s.trim();
+    static String normalizeHeader(String raw) {
+        if (raw == null || raw.isBlank()) return "";
+        String s = stripBracketed(raw, '（', '）');
+        s = stripBracketed(s, '(', ')');
+
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            boolean drop = ch == '*' || Character.isWhitespace(ch) || Character.isSpaceChar(ch);
+            if (drop && sb == null) sb = new StringBuilder(s.length()).append(s, 0, i);
+            else if (!drop && sb != null) sb.append(ch);
+        }
+        return sb == null ? s : sb.toString();
     }
 
-    private static String v(Row row, Map<String, Integer> col, String header, DataFormatter fmt) {
-        Integer idx = col.get(header);
-        if (idx == null) return "";
-        Cell cell = row.getCell(idx);
-        if (cell == null) return "";
-        return fmt.formatCellValue(cell).trim();
+    // 去掉 open...close（就近配对，不嵌套）；没有闭合的括号原样保留
+    private static String stripBracketed(String s, char open, char close) {
+        int from = s.indexOf(open);
+        if (from < 0) return s;
+
+        StringBuilder sb = new StringBuilder(s.length());
+        int i = 0;
+        while (from >= 0) {
+            int to = s.indexOf(close, from + 1);
+            if (to < 0) break;
+            sb.append(s, i, from);
+            i = to + 1;
+            from = s.indexOf(open, i);
+        }
+        return sb.append(s, i, s.length()).toString();
     }
 
     private static String blankToDefault(String s, String def) {
         return (s == null || s.isBlank()) ? def : s;
     }
 
-    private static LocalDate parseDate(String s) {
+    /**
+     * 常见：2025-12-16 / 2025/12/16 / 2025.12.16（月、日可以是一位）。
+     * 逐字符解析，不抛异常、不分配中间字符串；解析不了返回 null。
+     * 日大于当月天数（如 2025-2-30）按当月最后一天，与原来 DateTimeFormatter 的 SMART 解析一致。
+     */
+    static LocalDate parseDate(String s) {
         if (s == null) return null;
-        String t = s.trim();
-        if (t.isBlank()) return null;
+        int n = s.length();
+        int i = 0;
+        while (i < n && Character.isWhitespace(s.charAt(i))) i++;
+        while (n > i && Character.isWhitespace(s.charAt(n - 1))) n--;
+
+        int year = 0, month = 0, day = 0;
+        int part = 0, digits = 0;
+        for (; i < n; i++) {
+            char ch = s.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                int d = ch - '0';
+                if (part == 0) year = year * 10 + d;
+                else if (part == 1) month = month * 10 + d;
+                else day = day * 10 + d;
+                digits++;
+            } else if ((ch == '-' || ch == '/' || ch == '.') && part < 2) {
+                if (!validPart(part, digits)) return null;
+                part++;
+                digits = 0;
+            } else {
+                return null;
+            }
+        }
+        if (part != 2 || !validPart(2, digits)) return null;
+        if (month < 1 || month > 12 || day < 1 || day > 31) return null;
 
-        // 常见：2025-12-16 / 2025/12/16 / 2025.12.16
-        t = t.replace('.', '-').replace('/', '-');
+        int last = YearMonth.of(year, month).lengthOfMonth();
+        return LocalDate.of(year, month, Math.min(day, last));
+    }
 
-        List<DateTimeFormatter> fmts = List.of(
-                DateTimeFormatter.ofPattern("yyyy-M-d"),
-                DateTimeFormatter.ofPattern("yyyy-MM-dd")
-        );
+    private static boolean validPart(int part, int digits) {
+        return part == 0 ? digits == 4 : (digits == 1 || digits == 2);
+    }
 
-        for (DateTimeFormatter f : fmts) {
-            try { return LocalDate.parse(t, f); } catch (Exception ignored) {}
+    /**
+     * A1 形式单元格引用的列号（A=0），不创建 CellReference 对象；格式不对返回 -1。
+     */
+    static int columnIndex(String ref) {
+        int col = 0;
+        int i = 0;
+        for (; i < ref.length(); i++) {
+            char ch = ref.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') col = col * 26 + (ch - 'A' + 1);
+            else if (ch == '$' && i == 0) continue;
+            else break;
         }
-        return null;
+        return col - 1;
     }
 
     /**
      * 避免尾部空行被算 skipped：只要该行所有单元格格式化后都是空，就认为空行。
      */
-    private static boolean isRowBlank(Row row, DataFormatter fmt) {
-        if (row == null) return true;
-        short fc = row.getFirstCellNum();
-        short lc = row.getLastCellNum();
-        if (fc < 0 || lc < 0) return true;
-
-        for (int c = fc; c < lc; c++) {
-            Cell cell = row.getCell(c);
-            if (cell == null) continue;
-            String v = fmt.formatCellValue(cell);
-            if (v != null && !v.trim().isBlank()) return false;
+    static boolean isRowBlank(String[] cells, int maxCol) {
+        for (int c = 0; c <= maxCol; c++) {
+            String v = cells[c];
+            if (v != null && !v.isBlank()) return false;
         }
         return true;
     }
 
     // 可选：提示缺列（不阻断）
     @SuppressWarnings("unused")
-    private static List<String> validateMissingHeaders(Map<String, Integer> col) {
+    private static List<String> validateMissingHeaders(int[] plan) {
         List<String> missing = new ArrayList<>();
-        for (String h : HEADERS) {
-            if (!col.containsKey(h)) missing.add(h);
+        for (int i = 0; i < HEADERS.size(); i++) {
+            if (plan[i] < 0) missing.add(HEADERS.get(i));
         }
         if (!missing.isEmpty()) {
             return List.of("表头缺失列（可选列不影响导入）： " + String.join("、", missing));
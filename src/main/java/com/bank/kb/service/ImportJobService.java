@@ -0,0 +1,207 @@
+package com.bank.kb.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步导入任务：上传后立即返回 jobId，导入在独立的有界线程池里执行，前端轮询进度。
+ *
+ * 线程池大小 + 排队上限即准入控制：超出时直接拒绝，不占用 Tomcat 请求线程，
+ * 也不会因为多个部门同时上传把检索线程和数据库连接挤占光。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImportJobService {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    private static final Duration KEEP_FINISHED = Duration.ofHours(1);
+
+    private final ExcelImportService excelImportService;
+
+    @Value("${kb.import.workers:2}")
+    private int workers = 2;
+
+    @Value("${kb.import.queue-capacity:4}")
+    private int queueCapacity = 4;
+
+    /** 上传文件落盘的目录，空表示系统临时目录 */
+    @Value("${kb.import.temp-dir:}")
+    private String tempDir = "";
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    /** 对外展示的任务进度 */
+    public record JobView(
+            String jobId,
+            String fileName,
+            Status status,
+            int rowsProcessed,
+            int inserted,
+            int updated,
+            int unchanged,
+            int skipped,
+            int retired,
+            List<String> warnings,
+            String error,
+            LocalDateTime submittedAt,
+            LocalDateTime finishedAt
+    ) {}
+
+    @PostConstruct
+    void start() {
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "kb-import-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 提交导入任务：先把上传内容落盘（请求结束后 MultipartFile 不再可用），再排队执行。
+     *
+     * @throws RejectedExecutionException 正在执行 + 排队的任务已满
+     */
+    public JobView submit(MultipartFile file, String uploaderDept, boolean retireMissing) throws IOException {
+        evictFinished();
+
+        Path tmp = tempDir == null || tempDir.isBlank()
+                ? Files.createTempFile("kb-import-", ".xlsx")
+                : Files.createTempFile(Files.createDirectories(Path.of(tempDir.trim())), "kb-import-", ".xlsx");
+        try (InputStream in = file.getInputStream()) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            // 上传流读一半断了（客户端取消、磁盘满）：不留半截临时文件
+            try { Files.deleteIfExists(tmp); } catch (IOException ex) { e.addSuppressed(ex); }
+            throw e;
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), file.getOriginalFilename());
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, tmp, uploaderDept, retireMissing));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        return job.view();
+    }
+
+    public JobView get(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        return job == null ? null : job.view();
+    }
+
+    private void run(ImportJob job, Path tmp, String uploaderDept, boolean retireMissing) {
+        job.status = Status.RUNNING;
+        try {
+            excelImportService.importExcel(tmp, job.fileName, uploaderDept, retireMissing, job);
+            job.status = Status.DONE;
+        } catch (Exception e) {
+            log.warn("导入任务失败：{} {}", job.id, job.fileName, e);
+            job.error = e.getMessage();
+            job.status = Status.FAILED;
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            try { Files.deleteIfExists(tmp); } catch (IOException ignored) {}
+        }
+    }
+
+    private void evictFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(KEEP_FINISHED);
+        jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(cutoff));
+    }
+
+    /** 单个任务的可变状态：导入线程写，轮询请求读 */
+    private static final class ImportJob implements ImportProgress {
+        final String id;
+        final String fileName;
+        final LocalDateTime submittedAt = LocalDateTime.now();
+        final AtomicInteger rows = new AtomicInteger();
+        final AtomicInteger inserted = new AtomicInteger();
+        final AtomicInteger updated = new AtomicInteger();
+        final AtomicInteger unchanged = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicInteger retired = new AtomicInteger();
+        final List<String> warnings = new CopyOnWriteArrayList<>();
+        volatile Status status = Status.QUEUED;
+        volatile String error;
+        volatile LocalDateTime finishedAt;
+
+        ImportJob(String id, String fileName) {
+            this.id = id;
+            this.fileName = fileName;
+        }
+
+        @Override
+        public void rowProcessed() {
+            rows.incrementAndGet();
+        }
+
+        @Override
+        public void inserted(int n) {
+            inserted.addAndGet(n);
+        }
+
+        @Override
+        public void updated(int n) {
+            updated.addAndGet(n);
+        }
+
+        @Override
+        public void unchanged(int n) {
+            unchanged.addAndGet(n);
+        }
+
+        @Override
+        public void retired(int n) {
+            retired.addAndGet(n);
+        }
+
+        @Override
+        public void skipped() {
+            skipped.incrementAndGet();
+        }
+
+        @Override
+        public void warning(String msg) {
+            warnings.add(msg);
+        }
+
+        JobView view() {
+            return new JobView(id, fileName, status, rows.get(), inserted.get(), updated.get(), unchanged.get(),
+                    skipped.get(), retired.get(), List.copyOf(warnings), error, submittedAt, finishedAt);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.bank.kb.service;
+
+/**
+ * 导入进度回调（异步导入任务用来对外汇报进度）。
+ */
+public interface ImportProgress {
+
+    ImportProgress NONE = new ImportProgress() {};
+
+    /** 读到一条有效数据行（含被跳过的行） */
+    default void rowProcessed() {}
+
+    /** 一批已提交入库：新增 / 原地更新 / 内容未变跳过写入 */
+    default void inserted(int n) {}
+
+    default void updated(int n) {}
+
+    default void unchanged(int n) {}
+
+    /** 新文件里已不存在、被标记为作废的行 */
+    default void retired(int n) {}
+
+    default void skipped() {}
+
+    default void warning(String msg) {}
+}
@@ -0,0 +1,200 @@
+package com.bank.kb.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * {@link KnowledgeIndex} 的磁盘快照格式（大端，顺序写、mmap 读）：
+ *
+ * <pre>
+ * 头    : magic "KBIX" | 格式版本 | 字段签名 | 快照时间(epoch ms) | docCount
+ * 文档表: 每个 doc：记录 id | 下达时间 | 分类 | 部门 | 业务名称 | 关键词 | 各字段词数
+ * live  : long 个数 | BitSet 字
+ * 词典  : 词数 | 每个词：词 | size | docFreq | docs[size] | fieldTf[size]
+ * 尾    : 以上全部内容的 CRC32
+ * </pre>
+ *
+ * 分词规则或字段顺序变化时 {@link #FORMAT_VERSION} +1，旧快照自动作废、走全量构建。
+ */
+final class IndexSnapshot {
+
+    static final int MAGIC = 0x4B424958;
+    static final int FORMAT_VERSION = 1;
+
+    /** 快照内容；写的时候直接引用索引里的数组（调用方持读锁），读出来的都是新数组。 */
+    record Data(LocalDateTime takenAt, int docCount, long[] recordIds, int[] dates,
+                String[] categories, String[] departments, String[] bizNames, String[] keywords,
+                int[] fieldLengths, long[] live, Map<String, KnowledgeIndex.Postings> terms) {}
+
+    private IndexSnapshot() {}
+
+    /** 先写临时文件再原子替换，写到一半崩溃也不会留下半个快照。 */
+    static void write(Path file, Data d) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (OutputStream raw = Files.newOutputStream(tmp);
+                 CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(raw, 1 << 16), crc);
+                 DataOutputStream out = new DataOutputStream(checked)) {
+                writeBody(out, d);
+                out.flush();
+                // CRC 本身不参与校验，直接写到底层流
+                new DataOutputStream(raw).writeLong(crc.getValue());
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeBody(DataOutputStream out, Data d) throws IOException {
+        int fields = KnowledgeIndex.FIELDS.length;
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(fieldSignature());
+        out.writeLong(d.takenAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        out.writeInt(d.docCount());
+
+        for (int doc = 0; doc < d.docCount(); doc++) {
+            out.writeLong(d.recordIds()[doc]);
+            out.writeInt(d.dates()[doc]);
+            writeString(out, d.categories()[doc]);
+            writeString(out, d.departments()[doc]);
+            writeString(out, d.bizNames()[doc]);
+            writeString(out, d.keywords()[doc]);
+            for (int f = 0; f < fields; f++) out.writeInt(d.fieldLengths()[doc * fields + f]);
+        }
+
+        out.writeInt(d.live().length);
+        for (long w : d.live()) out.writeLong(w);
+
+        out.writeInt(d.terms().size());
+        for (var e : d.terms().entrySet()) {
+            KnowledgeIndex.Postings p = e.getValue();
+            writeString(out, e.getKey());
+            out.writeInt(p.size);
+            out.writeInt(p.docFreq);
+            for (int i = 0; i < p.size; i++) out.writeInt(p.docs[i]);
+            for (int i = 0; i < p.size; i++) out.writeInt(p.fieldTf[i]);
+        }
+    }
+
+    /**
+     * 读取快照；文件不存在返回 null。
+     *
+     * @throws IOException 文件损坏、版本或字段签名不一致
+     */
+    static Data read(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) return null;
+
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+
+        int bodyLen = buf.capacity() - Long.BYTES;
+        if (bodyLen < 24) throw new IOException("索引快照长度异常：" + buf.capacity());
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate().limit(bodyLen));
+        if (crc.getValue() != buf.getLong(bodyLen)) throw new IOException("索引快照校验失败");
+
+        if (buf.getInt() != MAGIC) throw new IOException("不是索引快照文件");
+        int version = buf.getInt();
+        if (version != FORMAT_VERSION) throw new IOException("索引快照版本不一致：" + version);
+        if (buf.getInt() != fieldSignature()) throw new IOException("索引字段已变化");
+        LocalDateTime takenAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(buf.getLong()), ZoneId.systemDefault());
+
+        int fields = KnowledgeIndex.FIELDS.length;
+        int docCount = buf.getInt();
+        long[] recordIds = new long[docCount];
+        int[] dates = new int[docCount];
+        String[] categories = new String[docCount];
+        String[] departments = new String[docCount];
+        String[] bizNames = new String[docCount];
+        String[] keywords = new String[docCount];
+        int[] fieldLengths = new int[docCount * fields];
+        for (int doc = 0; doc < docCount; doc++) {
+            recordIds[doc] = buf.getLong();
+            dates[doc] = buf.getInt();
+            categories[doc] = readString(buf);
+            departments[doc] = readString(buf);
+            bizNames[doc] = readString(buf);
+            keywords[doc] = readString(buf);
+            for (int f = 0; f < fields; f++) fieldLengths[doc * fields + f] = buf.getInt();
+        }
+
+        long[] live = new long[buf.getInt()];
+        for (int i = 0; i < live.length; i++) live[i] = buf.getLong();
+
+        int termCount = buf.getInt();
+        Map<String, KnowledgeIndex.Postings> terms = new HashMap<>(termCount * 4 / 3 + 1);
+        for (int t = 0; t < termCount; t++) {
+            String term = readString(buf);
+            KnowledgeIndex.Postings p = new KnowledgeIndex.Postings();
+            p.size = buf.getInt();
+            p.docFreq = buf.getInt();
+            p.docs = readInts(buf, p.size);
+            p.fieldTf = readInts(buf, p.size);
+            terms.put(term, p);
+        }
+
+        return new Data(takenAt, docCount, recordIds, dates, categories, departments, bizNames, keywords,
+                fieldLengths, live, terms);
+    }
+
+    // 字段顺序即倒排表里的字段位号，顺序变了旧快照就不能用
+    private static int fieldSignature() {
+        int h = 1;
+        for (KnowledgeIndex.Field f : KnowledgeIndex.FIELDS) h = 31 * h + f.name().hashCode();
+        return h;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(MappedByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // 按批量视图整段读，不逐个 getInt
+    private static int[] readInts(MappedByteBuffer buf, int n) {
+        int[] out = new int[Math.max(n, 1)];
+        buf.asIntBuffer().get(out, 0, n);
+        buf.position(buf.position() + n * Integer.BYTES);
+        return out;
+    }
+}
@@ -0,0 +1,10 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+
+import java.util.List;
+
+/**
+ * 知识记录写入（新增/导入）后发布，用于刷新内存索引等派生数据。
+ */
+public record KnowledgeChangedEvent(List<KnowledgeRecord> records) {}
@@ -0,0 +1,952 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import com.bank.kb.repo.KnowledgeIdStatsView;
+import com.bank.kb.repo.KnowledgeRecordRepo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 进程内倒排索引：词 -> 记录（doc 序号 + 字段 + 词频）。
+ *
+ * - 启动时从 knowledge_record 全量构建一次（构建完成前 SearchService 走原来的 like 兜底）
+ * - 新增/导入后通过 {@link KnowledgeChangedEvent} 增量更新
+ * - 构建完成后发布 {@link KnowledgeIndexReadyEvent}，派生结构从 {@link #forEachDoc} 全量初始化
+ * - 查询只读内存结构，不再扫描 @Lob 列
+ *
+ * 同一条记录再次入索引时分配新的 doc 序号，旧序号只做删除标记；删除标记过多时整体压缩。
+ *
+ * 配了 kb.search.snapshot.path 时定期（及停机时）把索引写成磁盘快照（格式见 {@link IndexSnapshot}），
+ * 启动时 mmap 读回快照，只回放 updatedAt 晚于快照时间的记录，不再全表读 @Lob 列。
+ *
+ * 查询串是纯字母时，另按 {@link PinyinIndex}（业务名称/部门/关键词的全拼、首字母）取命中，和正文命中取并集。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KnowledgeIndex {
+
+    /** 参与检索的字段（顺序即字段位号），weight 为相关度打分时的字段权重。 */
+    public enum Field {
+        BIZ_NAME(KnowledgeRecord::getBizName, 5.0),
+        KEYWORDS(KnowledgeRecord::getKeywords, 3.0),
+        LATEST_REQ(KnowledgeRecord::getLatestReq, 2.0),
+        PROCESS(KnowledgeRecord::getProcess, 1.0),
+        PENALTY(KnowledgeRecord::getPenalty, 1.0),
+        BASIS(KnowledgeRecord::getBasis, 1.0),
+        CASE_TEXT(KnowledgeRecord::getCaseText, 0.5);
+
+        private final Function<KnowledgeRecord, String> getter;
+        private final double weight;
+
+        Field(Function<KnowledgeRecord, String> getter, double weight) {
+            this.getter = getter;
+            this.weight = weight;
+        }
+
+        public double weight() {
+            return weight;
+        }
+
+        public String valueOf(KnowledgeRecord r) {
+            return getter.apply(r);
+        }
+    }
+
+    /**
+     * 文档表里保留的短字段（派生结构如联想词、同义词从这里构建，不必再读库）。
+     */
+    public record DocInfo(long id, String category, String department, String bizName, String keywords) {}
+
+    /**
+     * 一条命中及其排序键（分数、下达时间、id 均倒序），翻页时作为 seek 位置原样传回。
+     */
+    public record Hit(long id, double score, int dateKey) {}
+
+    /**
+     * 分面计数：total 为同时满足分类、部门筛选的命中数；
+     * 分类计数只套部门筛选、部门计数只套分类筛选（即“切到这一项能搜到多少条”），只列出计数大于 0 的项。
+     */
+    public record Facets(int total, Map<String, Integer> categories, Map<String, Integer> departments) {
+
+        public static Facets empty() {
+            return new Facets(0, Map.of(), Map.of());
+        }
+    }
+
+    public record FacetedHits(List<Hit> hits, Facets facets) {}
+
+    static final Field[] FIELDS = Field.values();
+    static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final int LOAD_BATCH = 500;
+
+    // BM25 参数
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // 同义词扩展出的查询串降权
+    static final double SYNONYM_WEIGHT = 0.8;
+
+    private final KnowledgeRecordRepo repo;
+    private final ApplicationEventPublisher events;
+    private final PinyinIndex pinyin;
+
+    /** 时效加权：分数 × (1 + recencyWeight × 0.5^(距今天数 / 半衰期))，0 表示不按时间加权 */
+    @Value("${kb.search.recency-weight:0.3}")
+    private double recencyWeight = 0.3;
+
+    @Value("${kb.search.recency-half-life-days:365}")
+    private double recencyHalfLifeDays = 365;
+
+    /** 索引快照文件，空表示不落盘（每次启动全量构建） */
+    @Value("${kb.search.snapshot.path:}")
+    private String snapshotPath = "";
+
+    /** 回放时在快照时间之前再多取这么久：覆盖快照那一刻已写库、但还没进索引的记录 */
+    @Value("${kb.search.snapshot.replay-overlap-seconds:600}")
+    private long replayOverlapSeconds = 600;
+
+    @Value("${kb.search.snapshot.interval-minutes:30}")
+    private long snapshotIntervalMinutes = 30;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready = false;
+
+    // 索引每变一次 +1（持写锁），快照只在有变化时重写
+    private long mutations = 0;
+    // 已写入快照时的 mutations，只在 snapshotLock 内读写
+    private long snapshotMutations = -1;
+    private final Object snapshotLock = new Object();
+    private ScheduledExecutorService snapshotter;
+
+    // ===== 词典 =====
+    private final Map<String, Postings> terms = new HashMap<>();
+
+    // ===== 文档表（按 doc 序号存放）=====
+    private int docCount = 0;
+    private long[] recordIds = new long[1024];
+    private String[] categories = new String[1024];
+    private String[] departments = new String[1024];
+    private String[] bizNames = new String[1024];
+    private String[] keywords = new String[1024];
+    private int[] dates = new int[1024];
+    // 分类/部门的小整数编号（-1 为空），分面计数用定长计数数组，不按字符串分组
+    private int[] categoryOrds = new int[1024];
+    private int[] departmentOrds = new int[1024];
+    private final FacetDict categoryDict = new FacetDict();
+    private final FacetDict departmentDict = new FacetDict();
+    private int[] fieldLengths = new int[1024 * FIELDS.length];
+    private final long[] fieldLengthSums = new long[FIELDS.length];
+    private final BitSet live = new BitSet();
+    private final Map<Long, Integer> ordByRecordId = new HashMap<>();
+    private final Map<String, String> interned = new HashMap<>();
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordByRecordId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 启动：有可用快照就从快照恢复，否则全量构建；之后按间隔写快照。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Path file = snapshotFile();
+        if (file == null) {
+            rebuild();
+            return;
+        }
+        if (!restore(file)) rebuild();
+
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "kb-index-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotter.scheduleWithFixedDelay(this::saveSnapshot,
+                snapshotIntervalMinutes, snapshotIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (snapshotter == null) return;
+        snapshotter.shutdownNow();
+        saveSnapshot();
+    }
+
+    /**
+     * 全量构建（按 id 分批读取，避免一次把整张表读进内存）。
+     */
+    public void rebuild() {
+        long t0 = System.currentTimeMillis();
+        clear();
+
+        long lastId = 0;
+        int total = 0;
+        while (true) {
+            List<KnowledgeRecord> batch = repo.findTop500ByIdGreaterThanOrderByIdAsc(lastId);
+            if (batch.isEmpty()) break;
+            indexAll(batch);
+            total += batch.size();
+            lastId = batch.get(batch.size() - 1).getId();
+            if (batch.size() < LOAD_BATCH) break;
+        }
+
+        ready = true;
+        log.info("知识索引构建完成：{} 条记录，{} 个词，耗时 {} ms",
+                total, terms.size(), System.currentTimeMillis() - t0);
+        saveSnapshot();
+        events.publishEvent(new KnowledgeIndexReadyEvent(this));
+    }
+
+    /**
+     * 读快照 + 回放快照之后改过的记录；最后按记录数、最大 id、id 之和和库对账
+     * （库里有删除、或有 updatedAt 早于回放起点的新记录等），对不上就放弃，改全量构建。
+     */
+    private boolean restore(Path file) {
+        long t0 = System.currentTimeMillis();
+        LocalDateTime takenAt;
+        try {
+            takenAt = loadSnapshot(file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("索引快照不可用，改为全量构建：{}", e.toString());
+            clear();
+            return false;
+        }
+        if (takenAt == null) return false;
+
+        LocalDateTime since = takenAt.minusSeconds(replayOverlapSeconds);
+        long lastId = 0;
+        int replayed = 0;
+        while (true) {
+            List<KnowledgeRecord> batch = repo.findTop500ByUpdatedAtAfterAndIdGreaterThanOrderByIdAsc(since, lastId);
+            if (batch.isEmpty()) break;
+            indexAll(batch);
+            replayed += batch.size();
+            lastId = batch.get(batch.size() - 1).getId();
+            if (batch.size() < LOAD_BATCH) break;
+        }
+
+        KnowledgeIdStatsView db = repo.findIdStats();
+        long[] mine = idStats();
+        long expected = db.getCount();
+        if (expected != mine[0] || db.getMaxId() != mine[1] || db.getIdSum() != mine[2]) {
+            log.warn("索引快照恢复后和库对不上（库 {} 条/最大 id {}/id 和 {}，索引 {} 条/{}/{}），改为全量构建",
+                    expected, db.getMaxId(), db.getIdSum(), mine[0], mine[1], mine[2]);
+            clear();
+            return false;
+        }
+
+        ready = true;
+        log.info("知识索引从快照恢复：{} 条记录（回放 {} 条），{} 个词，耗时 {} ms",
+                expected, replayed, terms.size(), System.currentTimeMillis() - t0);
+        events.publishEvent(new KnowledgeIndexReadyEvent(this));
+        return true;
+    }
+
+    // 记录数、最大 id、id 之和，和 KnowledgeRecordRepo.findIdStats 对应
+    private long[] idStats() {
+        lock.readLock().lock();
+        try {
+            long max = 0;
+            long sum = 0;
+            for (long id : ordByRecordId.keySet()) {
+                max = Math.max(max, id);
+                sum += id;
+            }
+            return new long[]{ordByRecordId.size(), max, sum};
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把快照装进索引（替换现有内容，不回放、不置 ready）。
+     *
+     * @return 快照时间；文件不存在返回 null
+     */
+    LocalDateTime loadSnapshot(Path file) throws IOException {
+        IndexSnapshot.Data d = IndexSnapshot.read(file);
+        if (d == null) return null;
+
+        clear();
+        lock.writeLock().lock();
+        try {
+            int n = d.docCount();
+            docCount = n;
+            recordIds = d.recordIds();
+            dates = d.dates();
+            bizNames = d.bizNames();
+            keywords = d.keywords();
+            fieldLengths = d.fieldLengths();
+            categories = new String[n];
+            departments = new String[n];
+            categoryOrds = new int[n];
+            departmentOrds = new int[n];
+            for (int doc = 0; doc < n; doc++) {
+                categories[doc] = intern(d.categories()[doc]);
+                departments[doc] = intern(d.departments()[doc]);
+                categoryOrds[doc] = categoryDict.ord(categories[doc]);
+                departmentOrds[doc] = departmentDict.ord(departments[doc]);
+            }
+
+            live.or(BitSet.valueOf(d.live()));
+            for (int doc = live.nextSetBit(0); doc >= 0 && doc < n; doc = live.nextSetBit(doc + 1)) {
+                ordByRecordId.put(recordIds[doc], doc);
+                for (int f = 0; f < FIELDS.length; f++) fieldLengthSums[f] += fieldLengths[doc * FIELDS.length + f];
+            }
+            terms.putAll(d.terms());
+            mutations++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return d.takenAt();
+    }
+
+    /**
+     * 索引有变化时写快照（构建中不写）；失败只记日志，下次启动退回全量构建。
+     * 定时线程和停机可能同时调用，用 snapshotLock 串行。
+     */
+    public void saveSnapshot() {
+        Path file = snapshotFile();
+        if (file == null || !ready) return;
+        synchronized (snapshotLock) {
+            try {
+                long t0 = System.currentTimeMillis();
+                long at;
+                int records;
+                IndexSnapshot.Data d;
+                lock.readLock().lock();
+                try {
+                    if (snapshotMutations == mutations) return;
+                    at = mutations;
+                    records = ordByRecordId.size();
+                    d = copyForSnapshot();
+                } finally {
+                    lock.readLock().unlock();
+                }
+                IndexSnapshot.write(file, d);
+                snapshotMutations = at;
+                log.info("知识索引快照已写入 {}：{} 条记录，耗时 {} ms", file, records, System.currentTimeMillis() - t0);
+            } catch (IOException | RuntimeException e) {
+                log.warn("知识索引快照写入失败：{}", e.toString());
+            }
+        }
+    }
+
+    void saveSnapshot(Path file) throws IOException {
+        IndexSnapshot.Data d;
+        lock.readLock().lock();
+        try {
+            d = copyForSnapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+        IndexSnapshot.write(file, d);
+    }
+
+    /**
+     * 持读锁时调用：只拷贝数组和倒排表（增量更新、压缩都会原地改这些数组），编码和写盘在锁外做，
+     * 写快照期间导入拿写锁不用等磁盘，排在它后面的检索也不会被拖住。
+     */
+    private IndexSnapshot.Data copyForSnapshot() {
+        int n = docCount;
+        Map<String, Postings> postings = new HashMap<>(terms.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Postings> e : terms.entrySet()) postings.put(e.getKey(), e.getValue().copy());
+        return new IndexSnapshot.Data(LocalDateTime.now(), n, Arrays.copyOf(recordIds, n), Arrays.copyOf(dates, n),
+                Arrays.copyOf(categories, n), Arrays.copyOf(departments, n), Arrays.copyOf(bizNames, n),
+                Arrays.copyOf(keywords, n), Arrays.copyOf(fieldLengths, n * FIELDS.length), live.toLongArray(), postings);
+    }
+
+    private Path snapshotFile() {
+        return (snapshotPath == null || snapshotPath.isBlank()) ? null : Path.of(snapshotPath.trim());
+    }
+
+    /**
+     * 遍历当前有效文档（持读锁；回调里不要再写索引）。
+     */
+    public void forEachDoc(Consumer<DocInfo> consumer) {
+        lock.readLock().lock();
+        try {
+            for (int doc = live.nextSetBit(0); doc >= 0 && doc < docCount; doc = live.nextSetBit(doc + 1)) {
+                consumer.accept(new DocInfo(recordIds[doc], categories[doc], departments[doc], bizNames[doc], keywords[doc]));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Order(0)
+    @EventListener
+    public void onKnowledgeChanged(KnowledgeChangedEvent event) {
+        indexAll(event.records());
+    }
+
+    public void indexAll(Collection<KnowledgeRecord> records) {
+        if (records == null || records.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            for (KnowledgeRecord r : records) {
+                if (r != null && r.getId() != null) indexOne(r);
+            }
+            maybeCompact();
+            mutations++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按 q 检索，返回相关度最高的 limit 条记录 id（分数倒序）。
+     * 匹配语义：q 的所有词都出现在同一个字段里（对应原来的 like '%q%' 任一字段）；
+     * 打分：按字段加权的 BM25F，再叠加最新要求下达时间的时效加权。
+     */
+    public List<Long> search(String q, String category, String department, int limit) {
+        return search(List.of(q), category, department, limit);
+    }
+
+    /**
+     * 多个查询串取并集（同义词扩展用）：第一个是用户原始输入，其余按 {@link #SYNONYM_WEIGHT} 降权，
+     * 同一条记录被多个查询串命中时取最高分。
+     */
+    public List<Long> search(List<String> queries, String category, String department, int limit) {
+        List<Hit> hits = searchAfter(queries, category, department, null, limit);
+        List<Long> ids = new ArrayList<>(hits.size());
+        for (Hit h : hits) ids.add(h.id());
+        return ids;
+    }
+
+    /**
+     * keyset 翻页：只取排在 after 之后的 limit 条（after 为 null 即第一页）。
+     * 每页都是同样的一次求交 + 有界堆，翻到第几页代价都一样，也不需要总数。
+     */
+    public List<Hit> searchAfter(List<String> queries, String category, String department, Hit after, int limit) {
+        if (queries.isEmpty() || limit <= 0) return List.of();
+
+        lock.readLock().lock();
+        try {
+            Scored all = scoreAll(queries, category, department);
+            return all == null ? List.of() : topK(all.docs(), all.scores(), after, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 同 {@link #searchAfter}，顺带给出按分类、部门的分面计数。
+     * 先不带筛选求出全部命中，再一趟遍历同时累加两组计数并过滤出本次结果，不额外查库。
+     */
+    public FacetedHits searchFaceted(List<String> queries, String category, String department, Hit after, int limit) {
+        if (queries.isEmpty() || limit <= 0) return new FacetedHits(List.of(), Facets.empty());
+
+        lock.readLock().lock();
+        try {
+            Scored all = scoreAll(queries, null, null);
+            if (all == null) return new FacetedHits(List.of(), Facets.empty());
+
+            int[] docs = all.docs();
+            double[] scores = all.scores();
+            int[] catCounts = new int[categoryDict.size()];
+            int[] deptCounts = new int[departmentDict.size()];
+            int n = 0;
+            for (int i = 0; i < docs.length; i++) {
+                int doc = docs[i];
+                boolean catOk = category == null || category.equals(categories[doc]);
+                boolean deptOk = department == null || department.equals(departments[doc]);
+                if (deptOk && categoryOrds[doc] >= 0) catCounts[categoryOrds[doc]]++;
+                if (catOk && departmentOrds[doc] >= 0) deptCounts[departmentOrds[doc]]++;
+                if (catOk && deptOk) {
+                    // docs/scores 是本次查询新分配的数组，原地压缩
+                    docs[n] = doc;
+                    scores[n++] = scores[i];
+                }
+            }
+
+            Facets facets = new Facets(n, categoryDict.counts(catCounts), departmentDict.counts(deptCounts));
+            List<Hit> hits = topK(Arrays.copyOf(docs, n), Arrays.copyOf(scores, n), after, limit);
+            return new FacetedHits(hits, facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ===================== 内部实现（调用方持锁） =====================
+
+    /** 命中 doc（递增）及其分数 */
+    private record Scored(int[] docs, double[] scores) {}
+
+    /** 各查询串分别求交打分后取并集（再并上原始查询串的拼音命中）；全部无命中返回 null。 */
+    private Scored scoreAll(List<String> queries, String category, String department) {
+        Scored acc = null;
+        for (int qi = 0; qi < queries.size(); qi++) {
+            Scored s = scoreQuery(queries.get(qi), category, department, qi == 0 ? 1.0 : SYNONYM_WEIGHT);
+            if (s == null) continue;
+            acc = acc == null ? s : union(acc.docs(), acc.scores(), s.docs(), s.scores());
+        }
+        Scored py = scorePinyin(queries.get(0), category, department);
+        if (py != null) acc = acc == null ? py : union(acc.docs(), acc.scores(), py.docs(), py.scores());
+        return acc;
+    }
+
+    /**
+     * 拼音命中：分数取 {@link PinyinIndex#match} 的命中分，按同义词同样降权，再叠加时效加权。
+     */
+    private Scored scorePinyin(String q, String category, String department) {
+        if (pinyin == null) return null;
+        Map<Long, Double> hits = pinyin.match(q);
+        if (hits.isEmpty()) return null;
+
+        // (doc, 分数) 按 doc 递增排，和正文命中一样才能做归并
+        long[] packed = new long[hits.size()];
+        double[] base = new double[hits.size()];
+        int n = 0;
+        for (Map.Entry<Long, Double> e : hits.entrySet()) {
+            Integer doc = ordByRecordId.get(e.getKey());
+            if (doc == null || !accept(doc, category, department)) continue;
+            packed[n] = ((long) doc << 32) | n;
+            base[n++] = e.getValue();
+        }
+        if (n == 0) return null;
+
+        Arrays.sort(packed, 0, n);
+        int[] cand = new int[n];
+        double[] scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            cand[i] = (int) (packed[i] >>> 32);
+            scores[i] = base[(int) packed[i]] * SYNONYM_WEIGHT;
+        }
+        boostRecent(cand, scores);
+        return new Scored(cand, scores);
+    }
+
+    private Scored scoreQuery(String q, String category, String department, double boost) {
+        List<String> grams = CjkTokenizer.queryTerms(q);
+        if (grams.isEmpty()) return null;
+
+        List<Postings> lists = postingsOf(grams);
+        if (lists == null) return null;
+
+        Matches m = match(lists);
+        int[] cand = new int[m.size];
+        int n = 0;
+        for (int i = 0; i < m.size; i++) {
+            int doc = m.docs[i];
+            if (accept(doc, category, department)) cand[n++] = doc;
+        }
+        if (n == 0) return null;
+
+        cand = Arrays.copyOf(cand, n);
+        double[] scores = score(cand, lists);
+        if (boost != 1.0) {
+            for (int i = 0; i < n; i++) scores[i] *= boost;
+        }
+        return new Scored(cand, scores);
+    }
+
+    private static Scored union(int[] a, double[] as, int[] b, double[] bs) {
+        int[] docs = new int[a.length + b.length];
+        double[] scores = new double[docs.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                docs[n] = a[i];
+                scores[n++] = as[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                docs[n] = b[j];
+                scores[n++] = bs[j++];
+            } else {
+                docs[n] = a[i];
+                scores[n++] = Math.max(as[i++], bs[j++]);
+            }
+        }
+        return new Scored(Arrays.copyOf(docs, n), Arrays.copyOf(scores, n));
+    }
+
+    private void clear() {
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            terms.clear();
+            docCount = 0;
+            Arrays.fill(fieldLengthSums, 0);
+            live.clear();
+            ordByRecordId.clear();
+            interned.clear();
+            categoryDict.clear();
+            departmentDict.clear();
+            mutations++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void indexOne(KnowledgeRecord r) {
+        Integer old = ordByRecordId.get(r.getId());
+        if (old != null) {
+            live.clear(old);
+            for (int f = 0; f < FIELDS.length; f++) fieldLengthSums[f] -= fieldLengths[old * FIELDS.length + f];
+        }
+
+        int doc = docCount++;
+        ensureCapacity(docCount);
+
+        recordIds[doc] = r.getId();
+        categories[doc] = intern(r.getCategory());
+        departments[doc] = intern(r.getDepartment());
+        categoryOrds[doc] = categoryDict.ord(categories[doc]);
+        departmentOrds[doc] = departmentDict.ord(departments[doc]);
+        bizNames[doc] = r.getBizName();
+        keywords[doc] = r.getKeywords();
+        LocalDate d = r.getLatestReqDate();
+        dates[doc] = d == null ? NO_DATE : (int) d.toEpochDay();
+
+        Map<String, int[]> tf = new HashMap<>();
+        for (Field f : FIELDS) {
+            tf.clear();
+            int[] len = {0};
+            CjkTokenizer.tokenize(f.valueOf(r), t -> {
+                tf.computeIfAbsent(t, k -> new int[1])[0]++;
+                len[0]++;
+            });
+            fieldLengths[doc * FIELDS.length + f.ordinal()] = len[0];
+            fieldLengthSums[f.ordinal()] += len[0];
+            for (var e : tf.entrySet()) {
+                terms.computeIfAbsent(e.getKey(), k -> new Postings()).add(doc, f.ordinal(), e.getValue()[0]);
+            }
+        }
+
+        live.set(doc);
+        ordByRecordId.put(r.getId(), doc);
+    }
+
+    private boolean accept(int doc, String category, String department) {
+        if (!live.get(doc)) return false;
+        if (category != null && !category.equals(categories[doc])) return false;
+        return department == null || department.equals(departments[doc]);
+    }
+
+    /** 任一词不在词典中即返回 null（AND 语义下必然无命中）。 */
+    private List<Postings> postingsOf(List<String> grams) {
+        List<Postings> lists = new ArrayList<>(grams.size());
+        for (String g : grams) {
+            Postings p = terms.get(g);
+            if (p == null) return null;
+            lists.add(p);
+        }
+        lists.sort(Comparator.comparingInt(p -> p.size));
+        return lists;
+    }
+
+    /**
+     * 从最短的倒排表开始，逐个求交；每个 doc 带一个字段位掩码，掩码清零即不再命中。
+     */
+    private Matches match(List<Postings> lists) {
+        Matches acc = lists.get(0).toMatches();
+        for (int i = 1; i < lists.size() && acc.size > 0; i++) {
+            acc = acc.intersect(lists.get(i).toMatches());
+        }
+        return acc;
+    }
+
+    /**
+     * BM25F：每个词先按字段权重、字段长度归一化合成一个词频，再套 BM25 饱和函数。
+     * cand 按 doc 递增，和倒排表一起双指针推进。
+     */
+    private double[] score(int[] cand, List<Postings> lists) {
+        int liveDocs = Math.max(1, ordByRecordId.size());
+        double[] avgLen = new double[FIELDS.length];
+        for (int f = 0; f < FIELDS.length; f++) {
+            avgLen[f] = Math.max(1.0, (double) fieldLengthSums[f] / liveDocs);
+        }
+
+        double[] scores = new double[cand.length];
+        for (Postings p : lists) {
+            double idf = Math.log(1 + (liveDocs - p.docFreq + 0.5) / (p.docFreq + 0.5));
+            int j = 0;
+            for (int i = 0; i < cand.length; i++) {
+                int doc = cand[i];
+                while (j < p.size && p.docs[j] < doc) j++;
+
+                double tf = 0;
+                while (j < p.size && p.docs[j] == doc) {
+                    int f = Postings.field(p.fieldTf[j]);
+                    double norm = 1 - B + B * fieldLengths[doc * FIELDS.length + f] / avgLen[f];
+                    tf += FIELDS[f].weight() * Postings.tf(p.fieldTf[j]) / norm;
+                    j++;
+                }
+                scores[i] += idf * tf * (K1 + 1) / (tf + K1);
+            }
+        }
+
+        boostRecent(cand, scores);
+        return scores;
+    }
+
+    private void boostRecent(int[] cand, double[] scores) {
+        if (recencyWeight <= 0) return;
+        int today = (int) LocalDate.now().toEpochDay();
+        for (int i = 0; i < cand.length; i++) {
+            int d = dates[cand[i]];
+            if (d == NO_DATE) continue;
+            double age = Math.max(0, today - d);
+            scores[i] *= 1 + recencyWeight * Math.pow(0.5, age / recencyHalfLifeDays);
+        }
+    }
+
+    /**
+     * 有界小顶堆取前 k 条（堆顶是当前第 k 名），不对全部命中排序；同分按下达时间、id 倒序。
+     * after 不为空时先跳过排在它之前（含它自己）的命中。
+     */
+    private List<Hit> topK(int[] cand, double[] scores, Hit after, int k) {
+        Comparator<Integer> worstFirst = (a, b) -> {
+            int c = Double.compare(scores[a], scores[b]);
+            if (c != 0) return c;
+            c = Integer.compare(dates[cand[a]], dates[cand[b]]);
+            return c != 0 ? c : Long.compare(recordIds[cand[a]], recordIds[cand[b]]);
+        };
+
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(k, cand.length) + 1, worstFirst);
+        for (int i = 0; i < cand.length; i++) {
+            if (after != null && !isAfter(scores[i], dates[cand[i]], recordIds[cand[i]], after)) continue;
+            if (heap.size() < k) {
+                heap.add(i);
+            } else if (worstFirst.compare(i, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(i);
+            }
+        }
+
+        Hit[] out = new Hit[heap.size()];
+        for (int i = out.length - 1; i >= 0; i--) {
+            int c = heap.poll();
+            out[i] = new Hit(recordIds[cand[c]], scores[c], dates[cand[c]]);
+        }
+        return Arrays.asList(out);
+    }
+
+    private static boolean isAfter(double score, int date, long id, Hit after) {
+        int c = Double.compare(score, after.score());
+        if (c != 0) return c < 0;
+        c = Integer.compare(date, after.dateKey());
+        return c != 0 ? c < 0 : id < after.id();
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= recordIds.length) return;
+        int cap = Math.max(n, recordIds.length * 2);
+        recordIds = Arrays.copyOf(recordIds, cap);
+        categories = Arrays.copyOf(categories, cap);
+        departments = Arrays.copyOf(departments, cap);
+        bizNames = Arrays.copyOf(bizNames, cap);
+        keywords = Arrays.copyOf(keywords, cap);
+        dates = Arrays.copyOf(dates, cap);
+        categoryOrds = Arrays.copyOf(categoryOrds, cap);
+        departmentOrds = Arrays.copyOf(departmentOrds, cap);
+        fieldLengths = Arrays.copyOf(fieldLengths, cap * FIELDS.length);
+    }
+
+    private String intern(String s) {
+        if (s == null) return null;
+        String t = s.trim();
+        return interned.computeIfAbsent(t, k -> k);
+    }
+
+    /**
+     * 删除标记超过一半时压缩：重新编号 doc 并过滤倒排表中的失效条目。
+     */
+    private void maybeCompact() {
+        int dead = docCount - ordByRecordId.size();
+        if (dead < 1024 || dead * 2 < docCount) return;
+
+        int[] remap = new int[docCount];
+        int next = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (!live.get(doc)) { remap[doc] = -1; continue; }
+            remap[doc] = next;
+            recordIds[next] = recordIds[doc];
+            categories[next] = categories[doc];
+            departments[next] = departments[doc];
+            bizNames[next] = bizNames[doc];
+            keywords[next] = keywords[doc];
+            dates[next] = dates[doc];
+            categoryOrds[next] = categoryOrds[doc];
+            departmentOrds[next] = departmentOrds[doc];
+            System.arraycopy(fieldLengths, doc * FIELDS.length, fieldLengths, next * FIELDS.length, FIELDS.length);
+            ordByRecordId.put(recordIds[next], next);
+            next++;
+        }
+
+        terms.values().removeIf(p -> p.remap(remap) == 0);
+        docCount = next;
+        live.clear();
+        live.set(0, next);
+        log.info("知识索引压缩完成：清理 {} 个失效文档", dead);
+    }
+
+    // ===================== 分面字典 =====================
+
+    /** 分类/部门取值 -> 编号（只增不减，全量重建时清空）。 */
+    static final class FacetDict {
+        private final Map<String, Integer> ords = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int ord(String value) {
+            if (value == null || value.isEmpty()) return -1;
+            Integer o = ords.get(value);
+            if (o != null) return o;
+            ords.put(value, values.size());
+            values.add(value);
+            return values.size() - 1;
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        Map<String, Integer> counts(int[] counts) {
+            Map<String, Integer> out = new LinkedHashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) out.put(values.get(i), counts[i]);
+            }
+            return out;
+        }
+
+        void clear() {
+            ords.clear();
+            values.clear();
+        }
+    }
+
+    // ===================== 倒排表 =====================
+
+    /** 一个词的倒排表：按 doc 递增，同一 doc 可能有多条（每个字段一条）。 */
+    static final class Postings {
+        int[] docs = new int[4];
+        /** 高 8 位：字段位号；低 24 位：词频 */
+        int[] fieldTf = new int[4];
+        int size = 0;
+        /** 不同 doc 的个数（含尚未压缩掉的失效 doc） */
+        int docFreq = 0;
+
+        void add(int doc, int field, int tf) {
+            if (size == 0 || docs[size - 1] != doc) docFreq++;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fieldTf = Arrays.copyOf(fieldTf, size * 2);
+            }
+            docs[size] = doc;
+            fieldTf[size] = (field << 24) | Math.min(tf, 0xFFFFFF);
+            size++;
+        }
+
+        static int field(int packed) {
+            return packed >>> 24;
+        }
+
+        static int tf(int packed) {
+            return packed & 0xFFFFFF;
+        }
+
+        /** 只拷有效部分（写快照用） */
+        Postings copy() {
+            Postings p = new Postings();
+            // 至少留 1 格，拷贝出来的也能继续 add
+            p.docs = Arrays.copyOf(docs, Math.max(size, 1));
+            p.fieldTf = Arrays.copyOf(fieldTf, Math.max(size, 1));
+            p.size = size;
+            p.docFreq = docFreq;
+            return p;
+        }
+
+        Matches toMatches() {
+            Matches m = new Matches(size);
+            for (int i = 0; i < size; i++) {
+                int doc = docs[i];
+                int bit = 1 << field(fieldTf[i]);
+                if (m.size > 0 && m.docs[m.size - 1] == doc) {
+                    m.masks[m.size - 1] |= bit;
+                } else {
+                    m.docs[m.size] = doc;
+                    m.masks[m.size] = bit;
+                    m.size++;
+                }
+            }
+            return m;
+        }
+
+        int remap(int[] remap) {
+            int w = 0;
+            docFreq = 0;
+            for (int i = 0; i < size; i++) {
+                int nd = remap[docs[i]];
+                if (nd < 0) continue;
+                if (w == 0 || docs[w - 1] != nd) docFreq++;
+                docs[w] = nd;
+                fieldTf[w] = fieldTf[i];
+                w++;
+            }
+            size = w;
+            return size;
+        }
+    }
+
+    /** 命中集合：doc 递增，masks 为命中字段位掩码。 */
+    static final class Matches {
+        final int[] docs;
+        final int[] masks;
+        int size;
+
+        Matches(int cap) {
+            docs = new int[cap];
+            masks = new int[cap];
+        }
+
+        Matches intersect(Matches o) {
+            Matches out = new Matches(Math.min(size, o.size));
+            int i = 0, j = 0;
+            while (i < size && j < o.size) {
+                int a = docs[i], b = o.docs[j];
+                if (a < b) i++;
+                else if (a > b) j++;
+                else {
+                    int mask = masks[i] & o.masks[j];
+                    if (mask != 0) {
+                        out.docs[out.size] = a;
+                        out.masks[out.size] = mask;
+                        out.size++;
+                    }
+                    i++;
+                    j++;
+                }
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.bank.kb.service;
+
+/**
+ * 内存索引全量构建完成后发布；派生结构（联想词等）据此从索引的文档表初始化。
+ */
+public record KnowledgeIndexReadyEvent(KnowledgeIndex index) {}
@@ -0,0 +1,156 @@
+package com.bank.kb.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 汉字转拼音（不带声调，ü 写作 v），拼音/首字母检索用。
+ *
+ * 字表是内置资源 dict/pinyin.txt（覆盖 CJK 基本区 + 扩展 A），进程内只加载一次，不依赖外部服务。
+ * 多音字保留全部读音：生成检索形式时先用常用读音，再逐个把某一个多音字换成其他读音（如 银行 -> yinxing、yinhang）。
+ */
+final class Pinyin {
+
+    private static final String TABLE = "dict/pinyin.txt";
+    private static final int FIRST = 0x3400;
+    private static final int LAST = 0x9FFF;
+
+    /** 一个词最多生成的读音组合数 */
+    static final int MAX_VARIANTS = 6;
+
+    private Pinyin() {}
+
+    private static final class Table {
+        // 下标 = 字符 - FIRST；没有读音的为 null，第一个为常用读音
+        static final String[][] READINGS = load();
+    }
+
+    // 一个汉字（可能多个读音）或一段连续字母数字
+    private record Part(String[] readings, boolean cjk) {}
+
+    /** 全拼 + 首字母两种形式（各读音组合），如 “信贷管理部” -> xindaiguanlibu、xdglb */
+    record Forms(List<String> full, List<String> initials) {
+        static final Forms EMPTY = new Forms(List.of(), List.of());
+    }
+
+    /**
+     * 没有（认识的）汉字的词返回 {@link Forms#EMPTY}：纯字母数字的词走原来的倒排检索就能查到。
+     * 字母数字原样小写保留（如 “ATM机” -> atmji、atmj），其它字符丢掉。
+     */
+    static Forms forms(String text) {
+        if (text == null || text.isBlank()) return Forms.EMPTY;
+
+        // 按“片段”拆：一个汉字一段（可能多读音），连续字母数字一段
+        List<Part> parts = new ArrayList<>();
+        boolean hasCjk = false;
+        int n = text.length();
+        for (int i = 0; i < n; ) {
+            char ch = text.charAt(i);
+            if (CjkTokenizer.isCjk(ch)) {
+                // 字表里没有的生僻字跳过
+                String[] r = readings(ch);
+                if (r != null) {
+                    parts.add(new Part(r, true));
+                    hasCjk = true;
+                }
+                i++;
+            } else if (CjkTokenizer.isWordChar(ch)) {
+                int start = i;
+                while (i < n && CjkTokenizer.isWordChar(text.charAt(i))) i++;
+                parts.add(new Part(new String[]{text.substring(start, i).toLowerCase(Locale.ROOT)}, false));
+            } else {
+                i++;
+            }
+        }
+        if (!hasCjk) return Forms.EMPTY;
+
+        LinkedHashSet<String> full = new LinkedHashSet<>();
+        LinkedHashSet<String> initials = new LinkedHashSet<>();
+        int[] pick = new int[parts.size()];
+        add(parts, pick, full, initials);
+        for (int p = 0; p < parts.size() && full.size() < MAX_VARIANTS; p++) {
+            for (int k = 1; k < parts.get(p).readings().length && full.size() < MAX_VARIANTS; k++) {
+                pick[p] = k;
+                add(parts, pick, full, initials);
+            }
+            pick[p] = 0;
+        }
+        return new Forms(List.copyOf(full), List.copyOf(initials));
+    }
+
+    /** 全部读音（常用读音在前），不认识的字返回 null */
+    static String[] readings(char ch) {
+        if (ch < FIRST || ch > LAST) return null;
+        return Table.READINGS[ch - FIRST];
+    }
+
+    /**
+     * 查询串是否按拼音处理：只含字母（可夹空格、隔音符 '），至少 2 个字母。
+     * 返回去掉空格、隔音符后的小写串，不是则返回 null。
+     */
+    static String asQuery(String q) {
+        if (q == null) return null;
+        StringBuilder sb = new StringBuilder(q.length());
+        for (int i = 0; i < q.length(); i++) {
+            char ch = q.charAt(i);
+            if ((ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z')) {
+                sb.append(Character.toLowerCase(ch));
+            } else if (ch != ' ' && ch != '\'') {
+                return null;
+            }
+        }
+        return sb.length() >= 2 ? sb.toString() : null;
+    }
+
+    private static void add(List<Part> parts, int[] pick, LinkedHashSet<String> full, LinkedHashSet<String> initials) {
+        StringBuilder f = new StringBuilder();
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < parts.size(); i++) {
+            Part part = parts.get(i);
+            String r = part.readings()[pick[i]];
+            f.append(r);
+            // 汉字取首字母，字母数字片段整体保留
+            if (part.cjk()) s.append(r.charAt(0));
+            else s.append(r);
+        }
+        full.add(f.toString());
+        initials.add(s.toString());
+    }
+
+    private static String[][] load() {
+        String[][] table = new String[LAST - FIRST + 1][];
+        try (InputStream in = Pinyin.class.getClassLoader().getResourceAsStream(TABLE)) {
+            if (in == null) throw new IllegalStateException("缺少拼音字表：" + TABLE);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            for (String line; (line = reader.readLine()) != null; ) {
+                if (line.isEmpty() || line.charAt(0) == '#') continue;
+                int sp = line.indexOf(' ');
+                String syllable = line.substring(0, sp).intern();
+                for (int i = sp + 1; i < line.length(); i++) {
+                    char ch = line.charAt(i);
+                    if (ch < FIRST || ch > LAST) continue;
+                    String[] old = table[ch - FIRST];
+                    if (old == null) {
+                        table[ch - FIRST] = new String[]{syllable};
+                    } else if (!Arrays.asList(old).contains(syllable)) {
+                        String[] r = Arrays.copyOf(old, old.length + 1);
+                        r[old.length] = syllable;
+                        table[ch - FIRST] = r;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取拼音字表失败：" + TABLE, e);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,210 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 拼音/首字母检索：业务名称、部门、关键词的全拼和首字母 -> 记录 id。
+ * 例如 xdgl、xindai 命中部门“信贷管理部”，dksp 命中业务名称“贷款审批”。
+ *
+ * - 和 {@link SuggestIndex} 一样：索引就绪时从文档表全量初始化，新增/导入后按记录增量更新
+ * - 两层结构：词 -> 记录 id（有序数组）；拼音形式 -> 词（有序表，按前缀取）
+ * - 查询串是纯字母时由 {@link KnowledgeIndex} 并入检索结果，排序、翻页、筛选、分面和中文检索一致
+ */
+@Slf4j
+@Component
+public class PinyinIndex {
+
+    /** 词的来源字段，weight 为命中分（部门不参与正文打分，给最低权重） */
+    enum Source {
+        BIZ_NAME(KnowledgeIndex.Field.BIZ_NAME.weight()),
+        KEYWORDS(KnowledgeIndex.Field.KEYWORDS.weight()),
+        DEPARTMENT(1.0);
+
+        final double weight;
+
+        Source(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final int MAX_TERM_LENGTH = 60;
+    /** 一次查询最多展开的拼音形式数：前缀很短时只取排在前面的这些，保证查询耗时有界 */
+    static final int MAX_FORMS = 512;
+
+    private record TermKey(Source source, String text) {}
+
+    /** 一个词及包含它的记录 id（递增） */
+    private static final class Term {
+        final TermKey key;
+        final Pinyin.Forms forms;
+        long[] ids = new long[2];
+        int size = 0;
+
+        Term(TermKey key, Pinyin.Forms forms) {
+            this.key = key;
+            this.forms = forms;
+        }
+
+        void add(long id) {
+            // 记录 id 基本递增，绝大多数是追加
+            int at = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0 && at < size) return;
+            if (at < 0) at = -at - 1;
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        void remove(long id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) return;
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<TermKey, Term> terms = new HashMap<>();
+    // 拼音形式 -> 词（同音词共用一个形式）
+    private final TreeMap<String, Term[]> forms = new TreeMap<>();
+    // 记录 id -> 该记录贡献的词（更新时用来回退）
+    private final Map<Long, Term[]> termsByRecord = new HashMap<>();
+
+    @EventListener
+    public void onIndexReady(KnowledgeIndexReadyEvent event) {
+        // 先读出文档表再加自己的锁：持本索引锁时不去拿 KnowledgeIndex 的锁（查询路径是反过来的顺序）
+        List<KnowledgeIndex.DocInfo> docs = new ArrayList<>();
+        event.index().forEachDoc(docs::add);
+
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            forms.clear();
+            termsByRecord.clear();
+            for (KnowledgeIndex.DocInfo d : docs) put(d.id(), d.department(), d.bizName(), d.keywords());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("拼音索引初始化完成：{} 个词，{} 个拼音形式", terms.size(), forms.size());
+    }
+
+    /**
+     * 在搜索缓存失效（@Order(100)）之前更新，失效后的新查询一定能查到新记录。
+     */
+    @Order(10)
+    @EventListener
+    public void onKnowledgeChanged(KnowledgeChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (KnowledgeRecord r : event.records()) {
+                if (r != null && r.getId() != null) put(r.getId(), r.getDepartment(), r.getBizName(), r.getKeywords());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按拼音前缀查：查询串（纯字母，可带空格/隔音符）是某个词全拼或首字母的前缀即命中。
+     * 返回 记录 id -> 命中分（来源字段权重 × 查询串占该拼音形式的比例，多处命中取最高）；不是拼音查询返回空表。
+     */
+    public Map<Long, Double> match(String q) {
+        String p = Pinyin.asQuery(q);
+        if (p == null) return Map.of();
+
+        Map<Long, Double> out = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int seen = 0;
+            for (Map.Entry<String, Term[]> e : forms.subMap(p, true, p + Character.MAX_VALUE, false).entrySet()) {
+                if (++seen > MAX_FORMS) break;
+                double cover = (double) p.length() / e.getKey().length();
+                for (Term t : e.getValue()) {
+                    double score = t.key.source().weight * cover;
+                    for (int i = 0; i < t.size; i++) out.merge(t.ids[i], score, Math::max);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return out;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ===================== 内部实现（调用方持写锁） =====================
+
+    private void put(long recordId, String department, String bizName, String keywords) {
+        Term[] old = termsByRecord.remove(recordId);
+        if (old != null) {
+            for (Term t : old) {
+                t.remove(recordId);
+                if (t.size == 0) drop(t);
+            }
+        }
+
+        LinkedHashSet<TermKey> keys = new LinkedHashSet<>();
+        addKey(keys, Source.BIZ_NAME, bizName);
+        addKey(keys, Source.DEPARTMENT, department);
+        for (String k : CjkTokenizer.splitKeywords(keywords)) addKey(keys, Source.KEYWORDS, k);
+
+        List<Term> mine = new ArrayList<>(keys.size());
+        for (TermKey key : keys) {
+            Term t = terms.get(key);
+            if (t == null) {
+                Pinyin.Forms f = Pinyin.forms(key.text());
+                if (f.full().isEmpty()) continue;
+                t = new Term(key, f);
+                terms.put(key, t);
+                for (String form : formsOf(t)) forms.merge(form, new Term[]{t}, PinyinIndex::concat);
+            }
+            t.add(recordId);
+            mine.add(t);
+        }
+        if (!mine.isEmpty()) termsByRecord.put(recordId, mine.toArray(new Term[0]));
+    }
+
+    private void drop(Term t) {
+        terms.remove(t.key);
+        for (String form : formsOf(t)) {
+            Term[] list = forms.get(form);
+            if (list == null) continue;
+            Term[] rest = Arrays.stream(list).filter(x -> x != t).toArray(Term[]::new);
+            if (rest.length == 0) forms.remove(form);
+            else forms.put(form, rest);
+        }
+    }
+
+    private static Set<String> formsOf(Term t) {
+        Set<String> out = new LinkedHashSet<>(t.forms.full());
+        out.addAll(t.forms.initials());
+        return out;
+    }
+
+    private static Term[] concat(Term[] a, Term[] b) {
+        Term[] out = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, out, a.length, b.length);
+        return out;
+    }
+
+    private static void addKey(Set<TermKey> out, Source source, String raw) {
+        String t = raw == null ? "" : raw.trim();
+        if (!t.isEmpty() && t.length() <= MAX_TERM_LENGTH) out.add(new TermKey(source, t));
+    }
+}
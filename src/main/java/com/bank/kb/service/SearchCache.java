@@ -0,0 +1,176 @@
+package com.bank.kb.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 搜索结果缓存：按归一化后的 (模式, q, 分类, 部门, 翻页游标, limit) 缓存，LRU + TTL 双重淘汰。
+ *
+ * 失效靠“代数”：每次知识写入（新增/导入批次提交）代数 +1 并清空；
+ * 结果按计算开始时的代数入缓存，计算期间发生写入的结果读出时代数对不上，当作未命中。
+ *
+ * 未命中时合并并发的相同查询（single-flight）：同一 (key, 代数) 只有第一个请求真正去查，
+ * 其余请求挂在它的 CompletableFuture 上等同一个结果（或同一个异常）；不加全局锁，只用 ConcurrentHashMap。
+ * 写入后代数变了，新来的请求不会挂到写入前开始的那次计算上。
+ *
+ * 指标：kb.search.cache.requests{result=hit|miss|coalesced}（coalesced = 合并掉、省下的查询次数）、
+ * kb.search.cache.size、kb.search.cache.hit.ratio、kb.search.cache.inflight
+ */
+@Component
+public class SearchCache implements MeterBinder {
+
+    public record Key(String mode, String q, String category, String department, String cursor, int limit) {
+
+        public static Key of(String mode, String q, String category, String department, String cursor, int limit) {
+            return new Key(mode, normalize(q), blankToNull(category), blankToNull(department), blankToNull(cursor), limit);
+        }
+
+        private static String normalize(String q) {
+            return q == null ? "" : q.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        }
+
+        private static String blankToNull(String s) {
+            return (s == null || s.isBlank()) ? null : s.trim();
+        }
+    }
+
+    public record Stats(long hits, long misses, long coalesced, long size, long generation) {
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Entry(Object value, long generation, long expiresAt) {}
+
+    private record Flight(Key key, long generation) {}
+
+    @Value("${kb.search.cache.max-entries:1000}")
+    private int maxEntries = 1000;
+
+    @Value("${kb.search.cache.ttl-seconds:300}")
+    private long ttlSeconds = 300;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    // 正在计算的查询：(key, 代数) -> 结果
+    private final Map<Flight, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key key, Supplier<T> loader) {
+        long now = System.currentTimeMillis();
+        long gen = generation.get();
+
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e != null && e.generation() == gen && e.expiresAt() > now) {
+                hits.increment();
+                return (T) e.value();
+            }
+            if (e != null) entries.remove(key);
+        }
+
+        Flight flight = new Flight(key, gen);
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(flight, mine);
+        if (running != null) {
+            coalesced.increment();
+            return (T) await(running);
+        }
+
+        misses.increment();
+        try {
+            T value = loader.get();
+            synchronized (entries) {
+                if (generation.get() == gen) {
+                    entries.put(key, new Entry(value, gen, now + ttlSeconds * 1000));
+                }
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flight, mine);
+        }
+    }
+
+    // 等别人那次计算的结果：异常原样抛出（和自己查时一样，如无效游标的 IllegalArgumentException）
+    private static Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw e;
+        }
+    }
+
+    /**
+     * 在内存索引更新之后再失效（见 KnowledgeIndex 的 @Order），避免新代数下读到旧索引的结果。
+     */
+    @Order(100)
+    @EventListener
+    public void onKnowledgeChanged(KnowledgeChangedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("kb.search.cache.requests", hits, LongAdder::doubleValue)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("kb.search.cache.requests", misses, LongAdder::doubleValue)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("kb.search.cache.requests", coalesced, LongAdder::doubleValue)
+                .tag("result", "coalesced").register(registry);
+        Gauge.builder("kb.search.cache.inflight", inFlight, Map::size).register(registry);
+        Gauge.builder("kb.search.cache.size", this, c -> c.stats().size()).register(registry);
+        Gauge.builder("kb.search.cache.hit.ratio", this, c -> c.stats().hitRatio()).register(registry);
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), coalesced.sum(), size, generation.get());
+    }
+}
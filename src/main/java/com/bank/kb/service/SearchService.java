@@ -1,66 +1,393 @@
 package com.bank.kb.service;
 
+import com.bank.kb.config.DeptCategoryMapping;
+import com.bank.kb.entity.CompressedTextConverter;
+import com.bank.kb.entity.KnowledgeBody;
 import com.bank.kb.entity.KnowledgeRecord;
 import com.bank.kb.repo.KnowledgeRecordRepo;
+import com.bank.kb.repo.KnowledgeSnippetView;
+import com.bank.kb.repo.KnowledgeSummaryView;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.Predicate;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 public class SearchService {
 
     private final KnowledgeRecordRepo repo;
+    private final KnowledgeIndex index;
+    private final SearchCache cache;
+    private final SynonymService synonyms;
+    private final MeterRegistry meters;
+
+    /** 正文压缩存储开启时，数据库端截不到片段的行在应用里解压后再截 */
+    @Value("${kb.body.compress:false}")
+    private boolean compressedBodies;
+
+    // 片段取词顺序，和 KnowledgeRecordRepo.findSnippets 的 case 顺序一致（bizName 已由数据库端判断）
+    private static final List<Map.Entry<String, Function<KnowledgeRecord, String>>> SNIPPET_FIELDS = List.of(
+            Map.entry("keywords", KnowledgeRecord::getKeywords),
+            Map.entry("latestReq", KnowledgeRecord::getLatestReq),
+            Map.entry("process", KnowledgeRecord::getProcess),
+            Map.entry("penalty", KnowledgeRecord::getPenalty),
+            Map.entry("basis", KnowledgeRecord::getBasis),
+            Map.entry("caseText", KnowledgeRecord::getCaseText));
+
+    /**
+     * 精简搜索结果：列表只展示这些字段，展开时再按 id 取完整记录。
+     * field/snippet：命中的字段名和命中位置附近的片段（前端负责高亮）。
+     */
+    public record SearchHit(
+            Long id,
+            String bizName,
+            String category,
+            String department,
+            LocalDate latestReqDate,
+            String field,
+            String snippet
+    ) {}
+
+    /**
+     * 一页结果 + 下一页游标（Slice 语义：多取一条判断有没有下一页，不做 count(*)）。
+     * nextCursor 为 null 表示已经是最后一页。
+     */
+    public record CursorPage<T>(List<T> items, String nextCursor) {
+
+        public static <T> CursorPage<T> empty() {
+            return new CursorPage<>(List.of(), null);
+        }
+
+        public boolean hasNext() {
+            return nextCursor != null;
+        }
+    }
+
+    /**
+     * 带分面计数的一页结果（items 为完整记录或精简结果，取决于 view）。
+     * 索引构建中退回 like 查询时 facets 为 null。
+     */
+    public record FacetedPage<T>(List<T> items, String nextCursor, KnowledgeIndex.Facets facets) {}
+
+    /**
+     * 内存索引就绪后：查询先做同义词扩展，索引求出命中 id，再只按 id 取这一页的记录；
+     * 索引构建中（刚启动）：退回原来的 like 查询（只有第一页）。
+     * 结果经 {@link SearchCache} 缓存，知识有写入时整体失效。
+     *
+     * @param cursor 上一页返回的 nextCursor，第一页传 null
+     * @throws IllegalArgumentException 游标无效
+     */
+    public CursorPage<KnowledgeRecord> search(String q, String category, String department, String cursor, int limit) {
+        String kw = q == null ? "" : q.trim();
+        if (kw.isEmpty()) {
+            return CursorPage.empty();
+        }
+
+        String cat = normCategory(category);
+        String dept = normDepartment(department);
+        int size = Math.max(1, limit);
+        KnowledgeIndex.Hit after = parseCursor(cursor);
+
+        return timed("full", cat, dept, CursorPage::items, () -> cache.get(SearchCache.Key.of("full", kw, cat, dept, cursor, size),
+                () -> doSearch(kw, cat, dept, after, size)));
+    }
+
+    private CursorPage<KnowledgeRecord> doSearch(String kw, String cat, String dept, KnowledgeIndex.Hit after, int size) {
+        if (!index.isReady()) {
+            return after == null ? new CursorPage<>(likeSearch(kw, cat, dept, size), null) : CursorPage.empty();
+        }
+        List<KnowledgeIndex.Hit> hits = index.searchAfter(synonyms.expand(kw), cat, dept, after, size + 1);
+        return new CursorPage<>(loadInOrder(idsOf(hits, size)), nextCursor(hits, size));
+    }
 
     /**
-     * 返回 Page（Controller 已经做了兜底转 List）
+     * 精简模式：只查表头列 + 数据库端截取的命中片段，不加载任何 @Lob 正文。
      */
-    public Page<KnowledgeRecord> search(String q, String category, String department, int limit) {
+    public CursorPage<SearchHit> searchSummaries(String q, String category, String department, String cursor, int limit) {
         String kw = q == null ? "" : q.trim();
         if (kw.isEmpty()) {
-            return Page.empty();
+            return CursorPage.empty();
+        }
+
+        String cat = normCategory(category);
+        String dept = normDepartment(department);
+        int size = Math.max(1, limit);
+        KnowledgeIndex.Hit after = parseCursor(cursor);
+
+        return timed("summary", cat, dept, CursorPage::items, () -> cache.get(SearchCache.Key.of("summary", kw, cat, dept, cursor, size),
+                () -> doSearchSummaries(kw, cat, dept, after, size)));
+    }
+
+    private CursorPage<SearchHit> doSearchSummaries(String kw, String cat, String dept, KnowledgeIndex.Hit after, int size) {
+        List<Long> ids;
+        String next = null;
+        if (index.isReady()) {
+            List<KnowledgeIndex.Hit> hits = index.searchAfter(synonyms.expand(kw), cat, dept, after, size + 1);
+            ids = idsOf(hits, size);
+            next = nextCursor(hits, size);
+        } else {
+            ids = after == null ? likeSearch(kw, cat, dept, size).stream().map(KnowledgeRecord::getId).toList() : List.of();
+        }
+        return ids.isEmpty() ? CursorPage.empty() : new CursorPage<>(summariesOf(ids, kw), next);
+    }
+
+    /**
+     * 检索 + 分面计数：分面和命中在索引里同一趟算出，代价和普通检索相当。
+     * 分类按固定的 6 类顺序列出（没有命中的记 0），部门按命中数倒序。
+     *
+     * @param summary true 返回精简结果（同 view=summary），否则返回完整记录
+     * @throws IllegalArgumentException 游标无效
+     */
+    public FacetedPage<?> searchFaceted(String q, String category, String department, String cursor, int limit, boolean summary) {
+        String kw = q == null ? "" : q.trim();
+        if (kw.isEmpty()) {
+            return new FacetedPage<>(List.of(), null, KnowledgeIndex.Facets.empty());
+        }
+
+        String cat = normCategory(category);
+        String dept = normDepartment(department);
+        int size = Math.max(1, limit);
+        KnowledgeIndex.Hit after = parseCursor(cursor);
+        String mode = summary ? "summary-faceted" : "full-faceted";
+
+        return timed(mode, cat, dept, FacetedPage::items, () -> cache.get(SearchCache.Key.of(mode, kw, cat, dept, cursor, size),
+                () -> doSearchFaceted(kw, cat, dept, after, size, summary)));
+    }
+
+    private FacetedPage<?> doSearchFaceted(String kw, String cat, String dept, KnowledgeIndex.Hit after, int size, boolean summary) {
+        if (!index.isReady()) {
+            CursorPage<?> page = summary ? doSearchSummaries(kw, cat, dept, after, size) : doSearch(kw, cat, dept, after, size);
+            return new FacetedPage<>(page.items(), page.nextCursor(), null);
+        }
+        KnowledgeIndex.FacetedHits r = index.searchFaceted(synonyms.expand(kw), cat, dept, after, size + 1);
+        List<Long> ids = idsOf(r.hits(), size);
+        List<?> items = summary ? summariesOf(ids, kw) : loadInOrder(ids);
+        return new FacetedPage<>(items, nextCursor(r.hits(), size), ordered(r.facets()));
+    }
+
+    private static KnowledgeIndex.Facets ordered(KnowledgeIndex.Facets f) {
+        Map<String, Integer> cats = new LinkedHashMap<>();
+        for (String c : DeptCategoryMapping.CATEGORIES) cats.put(c, f.categories().getOrDefault(c, 0));
+        // 不在固定分类里的历史数据也列出来，不丢计数
+        f.categories().forEach(cats::putIfAbsent);
+
+        Map<String, Integer> depts = new LinkedHashMap<>();
+        f.departments().entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .forEach(e -> depts.put(e.getKey(), e.getValue()));
+        return new KnowledgeIndex.Facets(f.total(), cats, depts);
+    }
+
+    private List<SearchHit> summariesOf(List<Long> ids, String kw) {
+        if (ids.isEmpty()) return List.of();
+
+        Map<Long, KnowledgeSummaryView> summaries = new HashMap<>();
+        for (KnowledgeSummaryView v : repo.findByIdIn(ids)) summaries.put(v.getId(), v);
+
+        Map<Long, Snippet> snippets = new HashMap<>();
+        for (KnowledgeSnippetView v : repo.findSnippets(ids, kw, CompressedTextConverter.PREFIX)) snippets.put(v.getId(), new Snippet(v.getField(), v.getSnippet()));
+        if (compressedBodies) unpackSnippets(ids, kw, summaries, snippets);
+
+        List<SearchHit> out = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            KnowledgeSummaryView v = summaries.get(id);
+            if (v == null) continue;
+            Snippet sn = snippets.get(id);
+            out.add(new SearchHit(
+                    v.getId(), v.getBizName(), v.getCategory(), v.getDepartment(), v.getLatestReqDate(),
+                    sn == null ? "bizName" : sn.field(),
+                    sn == null ? v.getBizName() : sn.text()
+            ));
+        }
+        return out;
+    }
+
+    private record Snippet(String field, String text) {}
+
+    /**
+     * 压缩存储的正文数据库端 locate 不到：片段落回了 bizName 但 bizName 不含检索词的行，
+     * 一次取回这几行的正文，在应用里按同样的字段顺序和截取规则重算。
+     */
+    private void unpackSnippets(List<Long> ids, String kw, Map<Long, KnowledgeSummaryView> summaries, Map<Long, Snippet> snippets) {
+        List<Long> miss = new ArrayList<>();
+        for (Long id : ids) {
+            KnowledgeSummaryView v = summaries.get(id);
+            Snippet sn = snippets.get(id);
+            if (v != null && (v.getBizName() == null || !v.getBizName().contains(kw))
+                    && (sn == null || "bizName".equals(sn.field()))) {
+                miss.add(id);
+            }
+        }
+        if (miss.isEmpty()) return;
+
+        for (KnowledgeRecord r : repo.findWithBodyByIdIn(miss)) {
+            for (Map.Entry<String, Function<KnowledgeRecord, String>> f : SNIPPET_FIELDS) {
+                String txt = f.getValue().apply(r);
+                int at = txt == null ? -1 : txt.indexOf(kw);
+                if (at < 0) continue;
+                // 同 substring(txt, greatest(locate(kw, txt) - 20, 1), 100)
+                int from = Math.max(at - 19, 0);
+                snippets.put(r.getId(), new Snippet(f.getKey(), txt.substring(from, Math.min(txt.length(), from + 100))));
+                break;
+            }
+        }
+    }
+
+    /**
+     * 命中的全部记录 id（相关度顺序，最多 max 条），导出检索结果用；不走缓存。
+     *
+     * @throws IllegalStateException 索引还在构建
+     */
+    public List<Long> matchingIds(String q, String category, String department, int max) {
+        String kw = q == null ? "" : q.trim();
+        if (kw.isEmpty()) return List.of();
+        if (!index.isReady()) throw new IllegalStateException("检索索引构建中，请稍后再导出");
+        return index.search(synonyms.expand(kw), normCategory(category), normDepartment(department), max);
+    }
+
+    /**
+     * 列表：按 (最新要求下达时间, id) 倒序 keyset 翻页，下达时间为空的排最后。
+     * 两段各自走索引范围扫描，翻到多深都只读这一页的行。
+     *
+     * @throws IllegalArgumentException 游标无效
+     */
+    public CursorPage<KnowledgeRecord> list(String cursor, int limit) {
+        SeekCursor.ListKey after = (cursor == null || cursor.isBlank()) ? null : SeekCursor.parseList(cursor);
+        int want = Math.max(1, limit) + 1;
+
+        List<KnowledgeRecord> rows = new ArrayList<>(want);
+        if (after == null) {
+            rows.addAll(repo.findDatedPage(PageRequest.ofSize(want)));
+        } else if (after.date() != null) {
+            rows.addAll(repo.findDatedPageAfter(after.date(), after.id(), PageRequest.ofSize(want)));
         }
+        if (rows.size() < want) {
+            long fromId = (after != null && after.date() == null) ? after.id() : Long.MAX_VALUE;
+            rows.addAll(repo.findUndatedPageAfter(fromId, PageRequest.ofSize(want - rows.size())));
+        }
+
+        if (rows.size() < want) return new CursorPage<>(rows, null);
+        List<KnowledgeRecord> page = rows.subList(0, want - 1);
+        KnowledgeRecord last = page.get(page.size() - 1);
+        return new CursorPage<>(page, SeekCursor.of(new SeekCursor.ListKey(last.getLatestReqDate(), last.getId())));
+    }
+
+    /**
+     * 指标：kb.search（耗时，含缓存命中）、kb.search.results（本页条数），
+     * 标签 mode / category / deptFilter；分类只取固定的 6 类，其它值归为 other，避免标签基数失控。
+     */
+    private <P> P timed(String mode, String cat, String dept, Function<P, List<?>> items, Supplier<P> search) {
+        long t0 = System.nanoTime();
+        P page = search.get();
+        Tags tags = Tags.of(
+                "mode", mode,
+                "category", cat == null ? "all" : (DeptCategoryMapping.CATEGORIES.contains(cat) ? cat : "other"),
+                "deptFilter", String.valueOf(dept != null));
+        Timer.builder("kb.search")
+                .description("检索耗时")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meters)
+                .record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("kb.search.results")
+                .description("每次检索返回的条数")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meters)
+                .record(items.apply(page).size());
+        return page;
+    }
+
+    private static KnowledgeIndex.Hit parseCursor(String cursor) {
+        return (cursor == null || cursor.isBlank()) ? null : SeekCursor.parseSearch(cursor);
+    }
+
+    private static List<Long> idsOf(List<KnowledgeIndex.Hit> hits, int size) {
+        List<Long> ids = new ArrayList<>(Math.min(hits.size(), size));
+        for (int i = 0; i < hits.size() && i < size; i++) ids.add(hits.get(i).id());
+        return ids;
+    }
+
+    // 多取了一条：有第 size+1 条才说明还有下一页，游标指向本页最后一条
+    private static String nextCursor(List<KnowledgeIndex.Hit> hits, int size) {
+        return hits.size() > size ? SeekCursor.of(hits.get(size - 1)) : null;
+    }
 
+    static String normCategory(String category) {
+        return (category == null || category.isBlank() || "全部".equals(category)) ? null : category.trim();
+    }
+
+    static String normDepartment(String department) {
+        return (department == null || department.isBlank()) ? null : department.trim();
+    }
+
+    private List<KnowledgeRecord> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+
+        Map<Long, KnowledgeRecord> byId = new HashMap<>();
+        for (KnowledgeRecord r : repo.findWithBodyByIdIn(ids)) byId.put(r.getId(), r);
+
+        List<KnowledgeRecord> out = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            KnowledgeRecord r = byId.get(id);
+            if (r != null) out.add(r);
+        }
+        return out;
+    }
+
+    private List<KnowledgeRecord> likeSearch(String kw, String category, String department, int limit) {
         String like = "%" + kw + "%";
 
         Specification<KnowledgeRecord> spec = (root, query, cb) -> {
             List<Predicate> ands = new ArrayList<>();
 
-            if (category != null && !category.isBlank() && !"全部".equals(category)) {
-                ands.add(cb.equal(root.get("category"), category.trim()));
+            if (category != null) {
+                ands.add(cb.equal(root.get("category"), category));
             }
-            if (department != null && !department.isBlank()) {
-                ands.add(cb.equal(root.get("department"), department.trim()));
+            if (department != null) {
+                ands.add(cb.equal(root.get("department"), department));
             }
 
             // ✅ 关键：不要对 LONGTEXT/CLOB 做 lower()，直接 like（中文检索足够）
             // ✅ 关键：@Lob 字段显式 as(String.class)，避免 Hibernate/H2 对 CLOB 类型挑剔
+            // 注意：开启正文压缩后，压缩过的长正文在这里 like 不到（只影响索引构建完成前的这几秒）
+            // 正文在 knowledge_record_body：关联进来做 like，同时把正文一起取回（只用于 findBy(...).all()，不会生成 count）
+            @SuppressWarnings("unchecked")
+            Join<KnowledgeRecord, KnowledgeBody> body = (Join<KnowledgeRecord, KnowledgeBody>) root.<KnowledgeRecord, KnowledgeBody>fetch("body");
+
             List<Predicate> ors = new ArrayList<>();
             ors.add(cb.like(root.get("bizName"), like)); // varchar，直接 like
 
-            ors.add(cb.like(root.get("process").as(String.class), like));
-            ors.add(cb.like(root.get("latestReq").as(String.class), like));
-            ors.add(cb.like(root.get("caseText").as(String.class), like));
-            ors.add(cb.like(root.get("penalty").as(String.class), like));
-            ors.add(cb.like(root.get("basis").as(String.class), like));
-            ors.add(cb.like(root.get("keywords").as(String.class), like));
+            ors.add(cb.like(body.get("process").as(String.class), like));
+            ors.add(cb.like(body.get("latestReq").as(String.class), like));
+            ors.add(cb.like(body.get("caseText").as(String.class), like));
+            ors.add(cb.like(body.get("penalty").as(String.class), like));
+            ors.add(cb.like(body.get("basis").as(String.class), like));
+            ors.add(cb.like(body.get("keywords").as(String.class), like));
 
             ands.add(cb.or(ors.toArray(new Predicate[0])));
 
-
-
             return cb.and(ands.toArray(new Predicate[0]));
         };
 
         // 默认按“最新要求下达时间”倒序（空值放后）
         Sort sort = Sort.by(Sort.Order.desc("latestReqDate"), Sort.Order.desc("id"));
-        Pageable pageable = PageRequest.of(0, Math.max(1, limit), sort);
 
-        return repo.findAll(spec, pageable);
+        // 只取前 limit 条，不走 Page（Page 会再跑一遍同样 like 条件的 count(*)）
+        return repo.findBy(spec, f -> f.sortBy(sort).limit(limit).all());
     }
 }
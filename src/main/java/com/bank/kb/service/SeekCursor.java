@@ -0,0 +1,94 @@
+package com.bank.kb.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+/**
+ * keyset 翻页游标：把“上一页最后一条”的排序键编码成不透明字符串，前端原样带回即可。
+ *
+ * - 检索：(分数, 下达时间, id)，见 {@link KnowledgeIndex.Hit}
+ * - 列表：(最新要求下达时间, id)，下达时间为空的记录排在最后
+ * - 变更流：(updatedAt, id) 正序，即消费方的水位
+ */
+public final class SeekCursor {
+
+    /** 列表翻页位置；date 为 null 表示已经翻到“无下达时间”那一段 */
+    public record ListKey(LocalDate date, long id) {}
+
+    /** 变更流水位：已经取到的最后一条的 (updatedAt, id) */
+    public record ChangeKey(LocalDateTime updatedAt, long id) {}
+
+    private static final String SEARCH = "s";
+    private static final String LIST = "l";
+    private static final String CHANGES = "c";
+
+    private SeekCursor() {}
+
+    public static String of(KnowledgeIndex.Hit h) {
+        return encode(SEARCH + "|" + Long.toHexString(Double.doubleToLongBits(h.score())) + "|" + h.dateKey() + "|" + h.id());
+    }
+
+    public static String of(ListKey k) {
+        return encode(LIST + "|" + (k.date() == null ? "" : k.date().toString()) + "|" + k.id());
+    }
+
+    // 截到微秒：库里 datetime(6) 只存到微秒，游标不能比库里的值更“晚”，否则会漏掉同一微秒的后续记录
+    public static String of(ChangeKey k) {
+        return encode(CHANGES + "|" + k.updatedAt().truncatedTo(ChronoUnit.MICROS) + "|" + k.id());
+    }
+
+    /**
+     * @throws IllegalArgumentException 游标被篡改或不是检索游标
+     */
+    public static KnowledgeIndex.Hit parseSearch(String cursor) {
+        String[] p = decode(cursor, SEARCH, 4);
+        try {
+            double score = Double.longBitsToDouble(Long.parseUnsignedLong(p[1], 16));
+            return new KnowledgeIndex.Hit(Long.parseLong(p[3]), score, Integer.parseInt(p[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的翻页游标");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException 游标被篡改或不是列表游标
+     */
+    public static ListKey parseList(String cursor) {
+        String[] p = decode(cursor, LIST, 3);
+        try {
+            return new ListKey(p[1].isEmpty() ? null : LocalDate.parse(p[1]), Long.parseLong(p[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的翻页游标");
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException 游标被篡改或不是变更流水位
+     */
+    public static ChangeKey parseChange(String cursor) {
+        String[] p = decode(cursor, CHANGES, 3);
+        try {
+            return new ChangeKey(LocalDateTime.parse(p[1]), Long.parseLong(p[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("无效的翻页游标");
+        }
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor, String kind, int parts) {
+        String[] p;
+        try {
+            p = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的翻页游标");
+        }
+        if (p.length != parts || !kind.equals(p[0])) throw new IllegalArgumentException("无效的翻页游标");
+        return p;
+    }
+}
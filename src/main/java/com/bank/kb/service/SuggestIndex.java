@@ -0,0 +1,119 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 输入联想：业务名称 + 关键词（逗号/顿号/空格分隔）组成的有序词表，按前缀取出现次数最高的 N 个。
+ *
+ * - 索引就绪时从 {@link KnowledgeIndex} 的文档表全量初始化（不再读库）
+ * - 新增/导入后按记录增量更新：先减掉该记录旧的词，再加新的词
+ */
+@Slf4j
+@Component
+public class SuggestIndex {
+
+    public record Suggestion(String term, int count) {}
+
+    private static final int MAX_TERM_LENGTH = 60;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 词 -> 包含该词的记录数（有序，前缀查询走 subMap）
+    private final TreeMap<String, Integer> counts = new TreeMap<>();
+    // 记录 id -> 该记录贡献的词（更新时用来回退）
+    private final Map<Long, String[]> termsByRecord = new HashMap<>();
+
+    @EventListener
+    public void onIndexReady(KnowledgeIndexReadyEvent event) {
+        lock.writeLock().lock();
+        try {
+            counts.clear();
+            termsByRecord.clear();
+            event.index().forEachDoc(d -> put(d.id(), d.bizName(), d.keywords()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("联想词表初始化完成：{} 个词", counts.size());
+    }
+
+    @EventListener
+    public void onKnowledgeChanged(KnowledgeChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (KnowledgeRecord r : event.records()) {
+                if (r != null && r.getId() != null) put(r.getId(), r.getBizName(), r.getKeywords());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 前缀联想：按出现次数倒序，同次数按字典序。
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String p = normalize(prefix);
+        if (p.isEmpty() || limit <= 0) return List.of();
+
+        Comparator<Map.Entry<String, Integer>> worstFirst = Map.Entry.<String, Integer>comparingByValue()
+                .thenComparing(Map.Entry.<String, Integer>comparingByKey().reversed());
+
+        PriorityQueue<Map.Entry<String, Integer>> heap = new PriorityQueue<>(limit + 1, worstFirst);
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Integer> e : counts.subMap(p, true, p + Character.MAX_VALUE, false).entrySet()) {
+                if (heap.size() < limit) {
+                    heap.add(e);
+                } else if (worstFirst.compare(e, heap.peek()) > 0) {
+                    heap.poll();
+                    heap.add(e);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Suggestion[] out = new Suggestion[heap.size()];
+        for (int i = out.length - 1; i >= 0; i--) {
+            Map.Entry<String, Integer> e = heap.poll();
+            out[i] = new Suggestion(e.getKey(), e.getValue());
+        }
+        return Arrays.asList(out);
+    }
+
+    // ===================== 内部实现（调用方持写锁） =====================
+
+    private void put(long recordId, String bizName, String keywords) {
+        String[] old = termsByRecord.remove(recordId);
+        if (old != null) {
+            for (String t : old) counts.computeIfPresent(t, (k, c) -> c > 1 ? c - 1 : null);
+        }
+
+        String[] terms = termsOf(bizName, keywords);
+        if (terms.length == 0) return;
+        for (String t : terms) counts.merge(t, 1, Integer::sum);
+        termsByRecord.put(recordId, terms);
+    }
+
+    private static String[] termsOf(String bizName, String keywords) {
+        LinkedHashSet<String> out = new LinkedHashSet<>();
+        addTerm(out, bizName);
+        for (String k : CjkTokenizer.splitKeywords(keywords)) addTerm(out, k);
+        return out.toArray(new String[0]);
+    }
+
+    private static void addTerm(Set<String> out, String raw) {
+        String t = normalize(raw);
+        if (!t.isEmpty() && t.length() <= MAX_TERM_LENGTH) out.add(t);
+    }
+
+    private static String normalize(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+}
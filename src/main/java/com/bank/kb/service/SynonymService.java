@@ -0,0 +1,161 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.SynonymEntry;
+import com.bank.kb.repo.SynonymEntryRepo;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 同义词/简称扩展：查询词 -> 同义词列表，检索时按 OR 合并各自的命中。
+ *
+ * 词典来源：
+ * - 自动：同一条记录的“业务名称 + 关键词”互为同义（关键词列本来就是填同义词、简称的）
+ *   太泛的词（出现在很多条记录里）不参与自动扩展，否则一搜就是半个库
+ * - 管理员维护的 synonym_entry 表，优先于自动词典
+ *
+ * 词典整体不可变，重建完成后原子替换，查询路径不加锁。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SynonymService {
+
+    // 一个词出现在超过这么多条记录的关键词里，就认为太泛，不做自动扩展
+    static final int MAX_AUTO_RECORDS_PER_TERM = 5;
+    // 单个查询词最多扩展出的同义词个数
+    static final int MAX_EXPANSIONS = 8;
+    private static final int MAX_TERM_LENGTH = 60;
+    private static final long REBUILD_DELAY_SECONDS = 2;
+
+    private final KnowledgeIndex index;
+    private final SynonymEntryRepo repo;
+    private final SearchCache searchCache;
+
+    private final AtomicReference<Map<String, List<String>>> dictionary = new AtomicReference<>(Map.of());
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService rebuilder = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "kb-synonym-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PreDestroy
+    void stop() {
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * 查询扩展：第一个元素永远是原查询，后面是同义词（没有则只有原查询）。
+     */
+    public List<String> expand(String q) {
+        if (q == null || q.isBlank()) return List.of();
+        String query = q.trim();
+        List<String> syn = dictionary.get().get(normalize(query));
+        if (syn == null) return List.of(query);
+
+        List<String> out = new ArrayList<>(syn.size() + 1);
+        out.add(query);
+        out.addAll(syn);
+        return out;
+    }
+
+    public int size() {
+        return dictionary.get().size();
+    }
+
+    @EventListener
+    public void onIndexReady(KnowledgeIndexReadyEvent event) {
+        rebuild();
+    }
+
+    /**
+     * 导入时按批连续触发，合并成一次延迟重建。
+     */
+    @EventListener
+    public void onKnowledgeChanged(KnowledgeChangedEvent event) {
+        if (rebuildScheduled.compareAndSet(false, true)) {
+            rebuilder.schedule(() -> {
+                rebuildScheduled.set(false);
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    log.warn("同义词词典重建失败", e);
+                }
+            }, REBUILD_DELAY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 全量重建并原子替换；管理员修改词条后直接调用。
+     */
+    public synchronized void rebuild() {
+        // 1) 自动词典：每条记录的 业务名称 + 关键词 为一组
+        List<String[]> groups = new ArrayList<>();
+        Map<String, Integer> recordsPerTerm = new HashMap<>();
+        index.forEachDoc(d -> {
+            LinkedHashSet<String> g = new LinkedHashSet<>();
+            addTerm(g, d.bizName());
+            for (String k : CjkTokenizer.splitKeywords(d.keywords())) addTerm(g, k);
+            if (g.size() < 2) return;
+            for (String t : g) recordsPerTerm.merge(t, 1, Integer::sum);
+            groups.add(g.toArray(new String[0]));
+        });
+
+        Map<String, LinkedHashSet<String>> merged = new HashMap<>();
+
+        // 2) 管理员词条先放，保证截断时优先保留
+        for (SynonymEntry e : repo.findAll()) {
+            LinkedHashSet<String> g = new LinkedHashSet<>();
+            addTerm(g, e.getTerm());
+            for (String s : CjkTokenizer.splitKeywords(e.getSynonyms())) addTerm(g, s);
+            link(merged, g);
+        }
+
+        for (String[] g : groups) {
+            for (String t : g) {
+                if (recordsPerTerm.get(t) > MAX_AUTO_RECORDS_PER_TERM) continue;
+                LinkedHashSet<String> syn = merged.computeIfAbsent(t, k -> new LinkedHashSet<>());
+                for (String s : g) {
+                    if (!s.equals(t)) syn.add(s);
+                }
+            }
+        }
+
+        Map<String, List<String>> next = new HashMap<>(merged.size() * 2);
+        merged.forEach((t, syn) -> {
+            if (!syn.isEmpty()) next.put(t, List.copyOf(syn).subList(0, Math.min(syn.size(), MAX_EXPANSIONS)));
+        });
+        dictionary.set(Collections.unmodifiableMap(next));
+        // 扩展结果变了，旧的缓存结果作废
+        searchCache.invalidateAll();
+        log.info("同义词词典重建完成：{} 个词", next.size());
+    }
+
+    private static void link(Map<String, LinkedHashSet<String>> merged, Set<String> group) {
+        for (String t : group) {
+            LinkedHashSet<String> syn = merged.computeIfAbsent(t, k -> new LinkedHashSet<>());
+            for (String s : group) {
+                if (!s.equals(t)) syn.add(s);
+            }
+        }
+    }
+
+    private static void addTerm(Set<String> out, String raw) {
+        String t = normalize(raw);
+        if (!t.isEmpty() && t.length() <= MAX_TERM_LENGTH) out.add(t);
+    }
+
+    static String normalize(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,181 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按内置模板写导出文件：SXSSF 流式写，每个 Sheet 只在内存里留最近 window 行，其余刷到临时文件。
+ *
+ * 每个 Sheet 都带模板的填写说明行 + 表头行（样式、合并单元格、列宽照搬），列按模板表头回填；
+ * 记录按原来的 Sheet 名分开写（导入时行键含 Sheet 名，这样导出的文件再导回来是“未变”而不是新增），
+ * 没有 Sheet 名的（页面新增的）写进模板自带的那个 Sheet。
+ */
+final class TemplateWorkbookWriter implements Closeable {
+
+    private static final int MAX_TEXT = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+
+    private final SXSSFWorkbook wb;
+    private final XSSFSheet template;
+    private final int headerRow;
+    private final int[] slots;
+    private final CellStyle[] dataStyles;
+
+    private final Map<String, SheetState> sheets = new HashMap<>();
+    private final Set<String> usedNames = new HashSet<>();
+    private int rows = 0;
+    private int truncated = 0;
+
+    private static final class SheetState {
+        final SXSSFSheet sheet;
+        int nextRow;
+
+        SheetState(SXSSFSheet sheet, int nextRow) {
+            this.sheet = sheet;
+            this.nextRow = nextRow;
+        }
+    }
+
+    TemplateWorkbookWriter(InputStream templateXlsx, int window) throws IOException {
+        XSSFWorkbook tpl = new XSSFWorkbook(templateXlsx);
+        template = tpl.getSheetAt(0);
+        headerRow = findHeaderRow(template);
+
+        Row header = template.getRow(headerRow);
+        slots = new int[header.getLastCellNum()];
+        dataStyles = new CellStyle[slots.length];
+        Row sample = template.getRow(headerRow + 1);
+        for (int c = 0; c < slots.length; c++) {
+            Cell cell = header.getCell(c);
+            slots[c] = cell == null ? -1 : ExcelImportService.headerSlot(cell.toString());
+            // 模板里表头下面预留的空行带了边框/换行样式，数据行沿用
+            Cell s = sample == null ? null : sample.getCell(c);
+            dataStyles[c] = s == null ? null : s.getCellStyle();
+        }
+
+        // 预留的空行去掉，数据从表头下一行开始写（SXSSF 只能在已有行之后追加）
+        for (int r = template.getLastRowNum(); r > headerRow; r--) {
+            Row row = template.getRow(r);
+            if (row != null) template.removeRow(row);
+        }
+
+        wb = new SXSSFWorkbook(tpl, window);
+        wb.setCompressTempFiles(true);
+        usedNames.add(template.getSheetName().toLowerCase(Locale.ROOT));
+    }
+
+    void write(KnowledgeRecord r) {
+        SheetState st = sheetFor(r.getSheetName());
+        Row row = st.sheet.createRow(st.nextRow++);
+        for (int c = 0; c < slots.length; c++) {
+            if (slots[c] < 0) continue;
+            String v = ExcelImportService.slotValue(r, slots[c]);
+            if (v == null || v.isEmpty()) continue;
+            if (v.length() > MAX_TEXT) {
+                v = v.substring(0, MAX_TEXT);
+                truncated++;
+            }
+            Cell cell = row.createCell(c);
+            cell.setCellValue(v);
+            if (dataStyles[c] != null) cell.setCellStyle(dataStyles[c]);
+        }
+        rows++;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    /** 超过单元格上限（32767 字）被截断的单元格数 */
+    int truncated() {
+        return truncated;
+    }
+
+    void finish(OutputStream out) throws IOException {
+        // 全部记录都有自己的 Sheet 时，模板自带的空 Sheet 不再保留
+        if (!sheets.containsKey(template.getSheetName()) && !sheets.isEmpty()) {
+            wb.removeSheetAt(wb.getSheetIndex(template.getSheetName()));
+        }
+        wb.write(out);
+    }
+
+    @Override
+    public void close() throws IOException {
+        wb.dispose();
+        wb.close();
+    }
+
+    private SheetState sheetFor(String sheetName) {
+        String key = (sheetName == null || sheetName.isBlank()) ? template.getSheetName() : sheetName;
+        SheetState st = sheets.get(key);
+        if (st != null) return st;
+
+        if (key.equals(template.getSheetName())) {
+            st = new SheetState(wb.getSheet(key), headerRow + 1);
+        } else {
+            SXSSFSheet sheet = wb.createSheet(uniqueName(key));
+            copyHeader(sheet);
+            st = new SheetState(sheet, headerRow + 1);
+        }
+        sheets.put(key, st);
+        return st;
+    }
+
+    private void copyHeader(SXSSFSheet sheet) {
+        for (int c = 0; c < slots.length; c++) sheet.setColumnWidth(c, template.getColumnWidth(c));
+        for (int r = 0; r <= headerRow; r++) {
+            Row src = template.getRow(r);
+            if (src == null) continue;
+            Row dst = sheet.createRow(r);
+            dst.setHeight(src.getHeight());
+            for (Cell sc : src) {
+                Cell dc = dst.createCell(sc.getColumnIndex());
+                dc.setCellStyle(sc.getCellStyle());
+                dc.setCellValue(sc.toString());
+            }
+        }
+        for (CellRangeAddress m : template.getMergedRegions()) {
+            if (m.getLastRow() <= headerRow) sheet.addMergedRegion(m.copy());
+        }
+    }
+
+    // Sheet 名不区分大小写且最长 31 字；导入来的名字本来就合法，这里只兜底
+    private String uniqueName(String name) {
+        String base = WorkbookUtil.createSafeSheetName(name);
+        String n = base;
+        for (int i = 2; !usedNames.add(n.toLowerCase(Locale.ROOT)); i++) {
+            String suffix = "(" + i + ")";
+            n = base.substring(0, Math.min(base.length(), 31 - suffix.length())) + suffix;
+        }
+        return n;
+    }
+
+    private static int findHeaderRow(XSSFSheet sheet) {
+        for (int r = 0; r <= Math.min(sheet.getLastRowNum(), 30); r++) {
+            Row row = sheet.getRow(r);
+            if (row == null) continue;
+            for (Cell c : row) {
+                if (ExcelImportService.headerSlot(c.toString()) == ExcelImportService.headerSlot("业务名称")) return r;
+            }
+        }
+        throw new IllegalStateException("导出模板里没有找到表头行（需要包含“业务名称”）");
+    }
+}
@@ -0,0 +1,122 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.UserAccount;
+import com.bank.kb.repo.UserAccountRepo;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 账号缓存：登录校验和 /api/me 按用户名取账号，命中就不再查库。
+ *
+ * 只缓存存在的账号（查不到不缓存，新建后立即可登录）；LRU 限条数 + TTL 兜底（直接改库、多实例部署）。
+ * 用户名比较不分大小写（MySQL 默认排序规则）：按库里的用户名转小写存，查找、evict 也按小写，
+ * 登录时输入 XINDAI 和重置密码时 evict("xindai") 对应同一条。
+ * 改账号的地方（创建、重置密码、一键建部门账号）必须调用 evict。
+ * 缓存的是不可变快照，不把 JPA 实体带出事务。
+ *
+ * 指标：kb.auth.user.cache.requests{result=hit|miss}、kb.auth.user.cache.size
+ */
+@Component
+@RequiredArgsConstructor
+public class UserAccountCache implements MeterBinder {
+
+    public record Account(Long id, String username, String passwordHash, String role, String department) {
+        static Account of(UserAccount u) {
+            return new Account(u.getId(), u.getUsername(), u.getPasswordHash(), u.getRole(), u.getDepartment());
+        }
+    }
+
+    private record Entry(Account account, long expiresAt) {}
+
+    private final UserAccountRepo repo;
+
+    @Value("${kb.auth.user-cache.max-entries:500}")
+    private int maxEntries = 500;
+
+    @Value("${kb.auth.user-cache.ttl-seconds:600}")
+    private long ttlSeconds = 600;
+
+    // 查库期间被 evict 的结果不回填（和 SearchCache 一样按代数判断）
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    public Optional<Account> find(String username) {
+        if (username == null) return Optional.empty();
+        String key = key(username);
+        long now = System.currentTimeMillis();
+        long gen = generation.get();
+
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e != null && e.expiresAt() > now) {
+                hits.increment();
+                return Optional.of(e.account());
+            }
+            if (e != null) entries.remove(key);
+        }
+
+        misses.increment();
+        Optional<Account> loaded = repo.findByUsername(username).map(Account::of);
+        loaded.ifPresent(a -> {
+            synchronized (entries) {
+                if (generation.get() == gen) {
+                    // 按库里的用户名存：输入和库里只差排序规则忽略的部分（如尾部空格）时不回填，下次照样查库
+                    entries.put(key(a.username()), new Entry(a, now + ttlSeconds * 1000));
+                }
+            }
+        });
+        return loaded;
+    }
+
+    public void evict(String username) {
+        generation.incrementAndGet();
+        if (username == null) return;
+        synchronized (entries) {
+            entries.remove(key(username));
+        }
+    }
+
+    public void evictAll() {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("kb.auth.user.cache.requests", hits, LongAdder::doubleValue)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("kb.auth.user.cache.requests", misses, LongAdder::doubleValue)
+                .tag("result", "miss").register(registry);
+        Gauge.builder("kb.auth.user.cache.size", entries, m -> {
+            synchronized (m) {
+                return m.size();
+            }
+        }).register(registry);
+    }
+}
@@ -1,10 +1,17 @@
 package com.bank.kb.web;
 
 import com.bank.kb.config.DeptCategoryMapping;
+import com.bank.kb.entity.SynonymEntry;
 import com.bank.kb.entity.UserAccount;
+import com.bank.kb.repo.SynonymEntryRepo;
 import com.bank.kb.repo.UserAccountRepo;
+import com.bank.kb.service.SearchCache;
+import com.bank.kb.service.SynonymService;
+import com.bank.kb.service.UserAccountCache;
 import jakarta.validation.constraints.NotBlank;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +26,10 @@ public class AdminController {
 
     private final UserAccountRepo repo;
     private final PasswordEncoder encoder;
+    private final SearchCache searchCache;
+    private final SynonymEntryRepo synonymRepo;
+    private final SynonymService synonymService;
+    private final UserAccountCache accounts;
 
     // ========== DTO ==========
     public record CreateUserReq(
@@ -33,6 +44,11 @@ public class AdminController {
             @NotBlank String newPassword
     ) {}
 
+    public record SynonymReq(
+            @NotBlank String term,
+            @NotBlank String synonyms    // 逗号/顿号/空格分隔
+    ) {}
+
     public record UserView(
             Long id,
             String username,
@@ -54,6 +70,7 @@ public class AdminController {
                 .department(req.department() == null ? "" : req.department().trim())
                 .build();
         repo.save(u);
+        accounts.evict(username);
         return Map.of("ok", true, "msg", "创建成功：" + username);
     }
 
@@ -76,6 +93,8 @@ public class AdminController {
         UserAccount u = uOpt.get();
         u.setPasswordHash(encoder.encode(req.newPassword()));
         repo.save(u);
+        // 旧密码哈希不能再留在缓存里
+        accounts.evict(username);
         return Map.of("ok", true, "msg", "已重置密码：" + username);
     }
 
@@ -91,11 +110,16 @@ public class AdminController {
         List<Map<String, String>> created = new ArrayList<>();
         List<Map<String, String>> skipped = new ArrayList<>();
 
+        // 一次查出已存在的账号，不再逐个部门 findByUsername
+        Set<String> existing = repo.findByUsernameIn(deptToUser.values()).stream()
+                .map(UserAccount::getUsername)
+                .collect(Collectors.toSet());
+
         for (var e : deptToUser.entrySet()) {
             String dept = e.getKey();
             String username = e.getValue();
 
-            if (repo.findByUsername(username).isPresent()) {
+            if (existing.contains(username)) {
                 skipped.add(Map.of("department", dept, "username", username, "reason", "已存在"));
                 continue;
             }
@@ -109,6 +133,7 @@ public class AdminController {
                     .department(dept)
                     .build();
             repo.save(u);
+            accounts.evict(username);
 
             created.add(Map.of("department", dept, "username", username, "password", password,
                     "category", DeptCategoryMapping.categoryOf(dept)));
@@ -124,6 +149,56 @@ public class AdminController {
         );
     }
 
+    // ========== 搜索缓存：命中率查看 / 手动清空 ==========
+    @GetMapping("/search-cache")
+    public Map<String, Object> searchCacheStats() {
+        SearchCache.Stats s = searchCache.stats();
+        return Map.of(
+                "hits", s.hits(),
+                "misses", s.misses(),
+                "coalesced", s.coalesced(),
+                "hitRatio", s.hitRatio(),
+                "size", s.size(),
+                "generation", s.generation()
+        );
+    }
+
+    @PostMapping("/search-cache/clear")
+    public Map<String, Object> clearSearchCache() {
+        searchCache.invalidateAll();
+        return Map.of("ok", true, "msg", "搜索缓存已清空");
+    }
+
+    // ========== 同义词/简称：管理员维护，保存后立即重建词典 ==========
+    @GetMapping("/synonyms")
+    public List<SynonymEntry> listSynonyms() {
+        return synonymRepo.findAll(Sort.by("term"));
+    }
+
+    @PostMapping("/synonyms")
+    public Map<String, Object> saveSynonym(@RequestBody SynonymReq req, Authentication auth) {
+        String term = req.term() == null ? "" : req.term().trim();
+        String syn = req.synonyms() == null ? "" : req.synonyms().trim();
+        if (term.isEmpty() || syn.isEmpty()) {
+            return Map.of("ok", false, "msg", "词条和同义词都不能为空");
+        }
+        SynonymEntry e = synonymRepo.findByTerm(term).orElseGet(SynonymEntry::new);
+        e.setTerm(term);
+        e.setSynonyms(syn);
+        e.setUpdatedBy(auth == null ? null : auth.getName());
+        synonymRepo.save(e);
+        synonymService.rebuild();
+        return Map.of("ok", true, "msg", "已保存：" + term, "dictionarySize", synonymService.size());
+    }
+
+    @DeleteMapping("/synonyms/{id}")
+    public Map<String, Object> deleteSynonym(@PathVariable Long id) {
+        if (!synonymRepo.existsById(id)) return Map.of("ok", false, "msg", "词条不存在：" + id);
+        synonymRepo.deleteById(id);
+        synonymService.rebuild();
+        return Map.of("ok", true, "msg", "已删除");
+    }
+
     // 你给的部门清单：这里给每个部门配一个“好记的用户名”
     private static Map<String, String> deptUsernameMap() {
         Map<String, String> m = new LinkedHashMap<>();
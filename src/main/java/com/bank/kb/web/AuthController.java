@@ -1,7 +1,6 @@
 package com.bank.kb.web;
 
-import com.bank.kb.entity.UserAccount;
-import com.bank.kb.repo.UserAccountRepo;
+import com.bank.kb.service.UserAccountCache;
 import lombok.RequiredArgsConstructor;
 import org.apache.catalina.User;
 import org.springframework.http.HttpStatus;
@@ -19,7 +18,7 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class AuthController {
 
-    private final UserAccountRepo userRepo;
+    private final UserAccountCache accounts;
 
 
     @GetMapping("/me")
@@ -29,13 +28,13 @@ public class AuthController {
         }
 
         String username = auth.getName();
-        UserAccount u = userRepo.findByUsername(username)
+        UserAccountCache.Account u = accounts.find(username)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "user not found"));
 
         Map<String,Object> body = Map.of(
-                "username", u.getUsername(),
-                "role", u.getRole() == null ? "" : u.getRole(),
-                "department", u.getDepartment() == null ? "" : u.getDepartment()
+                "username", u.username(),
+                "role", u.role() == null ? "" : u.role(),
+                "department", u.department() == null ? "" : u.department()
         );
 
         return ResponseEntity.ok()
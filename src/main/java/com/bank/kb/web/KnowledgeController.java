@@ -2,17 +2,33 @@ package com.bank.kb.web;
 
 import com.bank.kb.entity.KnowledgeRecord;
 import com.bank.kb.repo.KnowledgeRecordRepo;
-import com.bank.kb.service.ExcelImportService;
+import com.bank.kb.service.ChangeFeedService;
+import com.bank.kb.service.ExcelExportService;
+import com.bank.kb.service.ImportJobService;
+import com.bank.kb.service.KnowledgeChangedEvent;
 import com.bank.kb.service.SearchService;
+import com.bank.kb.service.SuggestIndex;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 
 @RestController
@@ -21,25 +37,102 @@ import java.util.List;
 public class KnowledgeController {
 
     private final SearchService searchService;
+    private final SuggestIndex suggestIndex;
     private final KnowledgeRecordRepo repo;
-    private final ExcelImportService excelImportService;
+    private final ImportJobService importJobService;
+    private final ApplicationEventPublisher events;
+    private final ResponseBodyCache bodies;
+    private final ChangeFeedService changeFeed;
+    private final ExcelExportService excelExport;
+
+    // 下一页游标放响应头，响应体仍是数组（老前端不用改）；没有下一页时不带这个头
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String XLSX = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
 
     /**
      * 🔍 搜索（前端主用）
-     * GET /api/search?q=门&category=保障类&department=科技部&limit=200
+     * GET /api/search?q=门&category=保障类&department=科技部&limit=50
+     * 下一页：GET /api/search?q=门&cursor=<上一页响应头 X-Next-Cursor>
      *
-     * 注意：SearchService 返回 Page，这里必须转 List，否则就会“爆红”
+     * 结果按相关度排序，每页默认 50 条（最多 200）
      */
     @GetMapping("/search")
-    public List<KnowledgeRecord> search(
+    public ResponseEntity<byte[]> search(
             @RequestParam("q") String q,
             @RequestParam(value = "category", required = false) String category,
             @RequestParam(value = "department", required = false) String department,
-            @RequestParam(value = "limit", defaultValue = "200") int limit
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            HttpServletRequest request
     ) {
         int size = Math.min(Math.max(limit, 1), 200);
-        Page<KnowledgeRecord> page = searchService.search(q, category, department, size);
-        return page.getContent();
+        return cached(request, () -> searchService.search(q, category, department, cursor, size));
+    }
+
+    /**
+     * 🔍 精简搜索：只返回 id/业务名称/分类/部门/下达时间 + 命中片段
+     * GET /api/search?q=门&view=summary
+     *
+     * 列表不带正文，点开某一行时再调 GET /api/knowledge/{id} 取完整记录
+     */
+    @GetMapping(value = "/search", params = {"view=summary", "facets!=true"})
+    public ResponseEntity<byte[]> searchSummary(
+            @RequestParam("q") String q,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "department", required = false) String department,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            HttpServletRequest request
+    ) {
+        int size = Math.min(Math.max(limit, 1), 200);
+        return cached(request, () -> searchService.searchSummaries(q, category, department, cursor, size));
+    }
+
+    /**
+     * 🔍 带分面计数的搜索：响应体为 {items, nextCursor, facets}
+     * GET /api/search?q=门&facets=true（可与 view=summary、category、department、cursor 组合）
+     *
+     * facets.categories / facets.departments：切换到该分类/部门时能搜到的条数，facets.total：当前筛选下的命中数
+     */
+    @GetMapping(value = "/search", params = "facets=true")
+    public ResponseEntity<byte[]> searchFaceted(
+            @RequestParam("q") String q,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "department", required = false) String department,
+            @RequestParam(value = "view", required = false) String view,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            HttpServletRequest request
+    ) {
+        int size = Math.min(Math.max(limit, 1), 200);
+        return bodies.respond(request, () -> {
+            SearchService.FacetedPage<?> page = badRequestOnInvalidCursor(
+                    () -> searchService.searchFaceted(q, category, department, cursor, size, "summary".equals(view)));
+            return new ResponseBodyCache.Body(page, page.nextCursor());
+        });
+    }
+
+    /**
+     * ⌨ 输入联想（纯内存，不查库）
+     * GET /api/suggest?prefix=贷款&limit=10
+     */
+    @GetMapping("/suggest")
+    public List<SuggestIndex.Suggestion> suggest(
+            @RequestParam("prefix") String prefix,
+            @RequestParam(value = "limit", defaultValue = "10") int limit
+    ) {
+        return suggestIndex.suggest(prefix, Math.min(Math.max(limit, 1), 50));
+    }
+
+    /**
+     * 📄 单条详情（精简搜索结果展开时用）
+     * GET /api/knowledge/123
+     */
+    @GetMapping("/knowledge/{id:\\d+}")
+    public KnowledgeRecord detail(@PathVariable("id") Long id) {
+        return repo.findWithBodyById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "记录不存在：" + id));
     }
 
     /**
@@ -47,27 +140,94 @@ public class KnowledgeController {
      * GET /api/knowledge/search?q=门
      */
     @GetMapping("/knowledge/search")
-    public List<KnowledgeRecord> searchCompat(
+    public ResponseEntity<byte[]> searchCompat(
             @RequestParam("q") String q,
             @RequestParam(value = "category", required = false) String category,
             @RequestParam(value = "department", required = false) String department,
-            @RequestParam(value = "limit", defaultValue = "200") int limit
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "200") int limit,
+            HttpServletRequest request
     ) {
         int size = Math.min(Math.max(limit, 1), 200);
-        Page<KnowledgeRecord> page = searchService.search(q, category, department, size);
-        return page.getContent();
+        return cached(request, () -> searchService.search(q, category, department, cursor, size));
     }
 
     /**
-     * 📄 列表（调试用）
+     * 📄 列表：按最新要求下达时间倒序（同一天按 id 倒序，没有日期的排最后）
      * GET /api/knowledge?limit=50
+     * 下一页：GET /api/knowledge?cursor=<上一页响应头 X-Next-Cursor>
      */
     @GetMapping("/knowledge")
-    public List<KnowledgeRecord> list(
-            @RequestParam(value = "limit", defaultValue = "50") int limit
+    public ResponseEntity<byte[]> list(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            HttpServletRequest request
     ) {
         int size = Math.min(Math.max(limit, 1), 200);
-        return repo.findAll(PageRequest.of(0, size)).getContent();
+        return cached(request, () -> searchService.list(cursor, size));
+    }
+
+    /**
+     * 🔄 变更流（增量同步）：按 updatedAt 正序取水位之后的记录
+     * GET /api/knowledge/changes?since=<上次返回的 watermark>&limit=500
+     * 首次同步：since 不传（从头）或传时间点，如 since=2025-01-01 / since=2025-01-01T08:00:00
+     *
+     * 响应 {items, watermark, hasMore}：hasMore 为 true 时带着 watermark 立即再取，否则过一会儿再取
+     */
+    @GetMapping("/knowledge/changes")
+    public ChangeFeedService.ChangeBatch<KnowledgeRecord> changes(
+            @RequestParam(value = "since", required = false) String since,
+            @RequestParam(value = "limit", defaultValue = "500") int limit
+    ) {
+        int size = Math.min(Math.max(limit, 1), 1000);
+        try {
+            return changeFeed.changesSince(since, size);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * 📡 变更推送（SSE）：新增/导入/作废提交后推 event: changes，data 为 {items, watermark, hasMore}
+     * GET /api/knowledge/changes/stream   （前端 new EventSource(...)，断线自动重连并补发）
+     *
+     * 实时推送的 watermark 为 null、事件不带 id，不能当水位用；水位以 /knowledge/changes 返回的为准
+     */
+    @GetMapping(value = "/knowledge/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changeStream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        try {
+            return changeFeed.subscribe(lastEventId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    /**
+     * 📤 导出 Excel（内置模板格式，可直接改完再导入）
+     * GET /api/knowledge/export?q=门&category=保障类&department=科技部
+     *
+     * 不带 q 导出全部（可按分类/部门过滤）；带 q 按检索相关度导出全部命中（不分页）
+     */
+    @GetMapping("/knowledge/export")
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "department", required = false) String department
+    ) {
+        ExcelExportService.ExportPlan plan;
+        try {
+            plan = excelExport.plan(q, category, department);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+        String filename = "知识库导出-" + LocalDate.now() + ".xlsx";
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(XLSX))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename, StandardCharsets.UTF_8).build().toString())
+                .body(out -> excelExport.write(plan, out));
     }
 
     /**
@@ -97,16 +257,60 @@ public class KnowledgeController {
             rec.setUpdateTime(LocalDate.now().toString());
         }
 
-        return repo.save(rec);
+        KnowledgeRecord saved = repo.save(rec);
+        events.publishEvent(new KnowledgeChangedEvent(List.of(saved)));
+        return saved;
     }
 
     /**
      * 📥 Excel 导入（王行长要的主入口）
-     * POST /api/knowledge/import (form-data: file)
+     * POST /api/knowledge/import (form-data: file, retireMissing=true|false)
+     *
+     * 异步执行：立即返回 jobId，前端轮询 GET /api/knowledge/import/{jobId} 看进度
+     * 重复上传同一份模板是幂等的：内容没变的行不写库，变了的原地更新；
+     * retireMissing=true 时，新文件里已经删掉的行会被标记为“作废”
      */
     @PostMapping("/knowledge/import")
-    public ExcelImportService.ImportResult importExcel(@RequestParam("file") MultipartFile file) {
+    public ImportJobService.JobView importExcel(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "retireMissing", defaultValue = "false") boolean retireMissing
+    ) throws IOException {
         // uploaderDept 如果前端能传，就改成 @RequestParam(required=false) String dept
-        return excelImportService.importExcel(file, null);
+        try {
+            return importJobService.submit(file, null, retireMissing);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "导入任务较多，请稍后再试");
+        }
+    }
+
+    /**
+     * 📥 导入进度
+     * GET /api/knowledge/import/{jobId}
+     */
+    @GetMapping("/knowledge/import/{jobId}")
+    public ImportJobService.JobView importStatus(@PathVariable("jobId") String jobId) {
+        ImportJobService.JobView job = importJobService.get(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "导入任务不存在或已过期：" + jobId);
+        }
+        return job;
+    }
+
+    /**
+     * 结果经 {@link ResponseBodyCache}：预序列化 + gzip，带 ETag，If-None-Match 命中直接 304。
+     */
+    private ResponseEntity<byte[]> cached(HttpServletRequest request, Supplier<SearchService.CursorPage<?>> query) {
+        return bodies.respond(request, () -> {
+            SearchService.CursorPage<?> page = badRequestOnInvalidCursor(query);
+            return new ResponseBodyCache.Body(page.items(), page.nextCursor());
+        });
+    }
+
+    private static <T> T badRequestOnInvalidCursor(Supplier<T> query) {
+        try {
+            return query.get();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 }
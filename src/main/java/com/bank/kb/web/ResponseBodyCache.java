@@ -0,0 +1,202 @@
+package com.bank.kb.web;
+
+import com.bank.kb.service.SearchCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 检索/列表接口的响应体缓存：结果只序列化一次、（够大时）gzip 压缩一次，之后直接写字节。
+ *
+ * - ETag 由知识库版本（{@link SearchCache#generation()}）+ 进程启动时间 + 当天日期组成
+ *   （相关度的时效加权按天变），gzip 与未压缩两种表示的 ETag 不同（强校验）
+ * - If-None-Match 对得上当前版本时直接 304，不跑查询、不查缓存
+ * - 按总字节数限额 LRU 淘汰；版本过期的条目读到时丢弃
+ *
+ * 指标：kb.http.body.cache.requests{result=not_modified|hit|miss}、kb.http.body.cache.bytes
+ */
+@Component
+@RequiredArgsConstructor
+public class ResponseBodyCache implements MeterBinder {
+
+    /** 接口结果 + 下一页游标（写到 X-Next-Cursor 头，没有则为 null） */
+    public record Body(Object value, String nextCursor) {}
+
+    private record Entry(String version, byte[] json, byte[] gzip, String nextCursor) {
+        long bytes() {
+            return json.length + (gzip == null ? 0 : gzip.length);
+        }
+    }
+
+    private static final String GZIP_SUFFIX = "-gz";
+
+    private final ObjectMapper mapper;
+    private final SearchCache searchCache;
+
+    @Value("${kb.http.body-cache.max-bytes:33554432}")
+    private long maxBytes = 32L << 20;
+
+    // 太小的响应压缩不划算
+    @Value("${kb.http.gzip-min-bytes:1024}")
+    private int gzipMinBytes = 1024;
+
+    // 重启后代数从 0 开始，带上启动时间避免和重启前的 ETag 撞上
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes = 0;
+
+    public ResponseEntity<byte[]> respond(HttpServletRequest req, Supplier<Body> loader) {
+        long gen = searchCache.generation();
+        String version = epoch + "-" + gen + "-" + LocalDate.now().toEpochDay();
+
+        String matched = matchingTag(req.getHeader(HttpHeaders.IF_NONE_MATCH), version);
+        if (matched != null) {
+            notModified.increment();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(baseHeaders(matched)).build();
+        }
+
+        String key = req.getRequestURI() + "?" + (req.getQueryString() == null ? "" : req.getQueryString());
+        Entry e;
+        synchronized (entries) {
+            e = entries.get(key);
+            if (e != null && !e.version().equals(version)) {
+                remove(key);
+                e = null;
+            }
+        }
+
+        if (e != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            e = serialize(version, loader.get());
+            // 查询期间有写入：结果可能已经是新数据，不缓存也不给 ETag
+            if (searchCache.generation() != gen) return write(e, null, acceptsGzip(req));
+            synchronized (entries) {
+                put(key, e);
+            }
+        }
+        return write(e, version, acceptsGzip(req));
+    }
+
+    private Entry serialize(String version, Body body) {
+        try {
+            byte[] json = mapper.writeValueAsBytes(body.value());
+            byte[] gzip = json.length >= gzipMinBytes ? gzip(json) : null;
+            return new Entry(version, json, gzip, body.nextCursor());
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("响应序列化失败", ex);
+        }
+    }
+
+    private static ResponseEntity<byte[]> write(Entry e, String version, boolean gzipOk) {
+        boolean gz = gzipOk && e.gzip() != null;
+        HttpHeaders h = baseHeaders(version == null ? null : version + (gz ? GZIP_SUFFIX : ""));
+        h.setContentType(MediaType.APPLICATION_JSON);
+        if (gz) h.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        if (e.nextCursor() != null) h.set(KnowledgeController.NEXT_CURSOR_HEADER, e.nextCursor());
+        return ResponseEntity.ok().headers(h).body(gz ? e.gzip() : e.json());
+    }
+
+    private static HttpHeaders baseHeaders(String tag) {
+        HttpHeaders h = new HttpHeaders();
+        // 浏览器可以存，但每次都要带 If-None-Match 回来确认；列表需要登录，不让中间代理缓存
+        h.setCacheControl("private, no-cache");
+        h.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        if (tag != null) h.setETag("\"" + tag + "\"");
+        return h;
+    }
+
+    /**
+     * If-None-Match 里任一标签（弱比较，忽略 W/）等于当前版本的任一表示，返回该标签（不带引号），否则 null。
+     */
+    static String matchingTag(String ifNoneMatch, String version) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) return null;
+        for (String t : ifNoneMatch.split(",")) {
+            String tag = t.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.length() < 2 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"') continue;
+            tag = tag.substring(1, tag.length() - 1);
+            if (tag.equals(version) || tag.equals(version + GZIP_SUFFIX)) return tag;
+        }
+        return null;
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest req) {
+        String ae = req.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return ae != null && ae.toLowerCase(Locale.ROOT).contains("gzip");
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out, 8192)) {
+            gz.write(json);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    // ===== 以下调用方持 entries 锁 =====
+
+    private void put(String key, Entry e) {
+        if (e.bytes() > maxBytes) return;
+        remove(key);
+        entries.put(key, e);
+        totalBytes += e.bytes();
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            totalBytes -= it.next().bytes();
+            it.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) totalBytes -= old.bytes();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("kb.http.body.cache.requests", notModified, LongAdder::doubleValue)
+                .tag("result", "not_modified").register(registry);
+        FunctionCounter.builder("kb.http.body.cache.requests", hits, LongAdder::doubleValue)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("kb.http.body.cache.requests", misses, LongAdder::doubleValue)
+                .tag("result", "miss").register(registry);
+        Gauge.builder("kb.http.body.cache.bytes", this, c -> {
+            synchronized (c.entries) {
+                return c.totalBytes;
+            }
+        }).register(registry);
+    }
+}
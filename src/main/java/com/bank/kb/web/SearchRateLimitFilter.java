@@ -0,0 +1,221 @@
+package com.bank.kb.web;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 检索接口限流（/api/search 免登录，失控的脚本或前端重试不能把 Tomcat 线程和数据库连接占满）：
+ *
+ * - 每个客户端一个令牌桶：已登录的按账号，匿名的按 IP；超出返回 429 + Retry-After
+ * - 全局并发上限：满了最多排 max-queue 个、每个最多等 queue-timeout-ms，排不上或等超时返回 503，不堆积
+ * - 都在 Spring Security 之前，被拒的请求不建会话、不做认证
+ *
+ * 令牌桶用 GCRA（按“理论到达时间”计算，和令牌桶等价）：每个桶一个 AtomicLong，CAS 更新，不加锁。
+ *
+ * 指标：kb.search.rejected{reason=rate|queue_full|queue_timeout}、kb.search.active、kb.search.queued、
+ * kb.search.ratelimit.clients
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class SearchRateLimitFilter extends OncePerRequestFilter implements MeterBinder {
+
+    // 每隔这么多请求清理一次空闲（桶已满）的客户端
+    private static final int SWEEP_EVERY = 1024;
+
+    @Value("${kb.search.rate-limit.enabled:true}")
+    private boolean enabled = true;
+
+    /** 每个客户端每秒补充的请求数 */
+    @Value("${kb.search.rate-limit.per-client-rate:10}")
+    private double perClientRate = 10;
+
+    /** 每个客户端允许的突发请求数（桶容量） */
+    @Value("${kb.search.rate-limit.per-client-burst:30}")
+    private int perClientBurst = 30;
+
+    @Value("${kb.search.rate-limit.max-concurrent:32}")
+    private int maxConcurrent = 32;
+
+    @Value("${kb.search.rate-limit.max-queue:64}")
+    private int maxQueue = 64;
+
+    @Value("${kb.search.rate-limit.queue-timeout-ms:500}")
+    private long queueTimeoutMs = 500;
+
+    /** 一个客户端的令牌桶：tat = 理论到达时间（纳秒），tat 不超过 now + 容量 × 间隔 即有令牌 */
+    static final class Bucket {
+        private final AtomicLong tat;
+
+        Bucket(long now) {
+            this.tat = new AtomicLong(now);
+        }
+
+        /** 取一个令牌：成功返回 0，否则返回还要等多少纳秒 */
+        long tryTake(long now, long interval, long tolerance) {
+            while (true) {
+                long t = tat.get();
+                long allowAt = t - tolerance;
+                if (now < allowAt) return allowAt - now;
+                if (tat.compareAndSet(t, Math.max(t, now) + interval)) return 0;
+            }
+        }
+
+        boolean idle(long now) {
+            return tat.get() <= now;
+        }
+    }
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger sinceSweep = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private Semaphore permits;
+
+    private Counter rejectedRate;
+    private Counter rejectedQueueFull;
+    private Counter rejectedQueueTimeout;
+
+    @Override
+    protected void initFilterBean() {
+        // 作为 bean 初始化一次，容器 init 时还会再调一次
+        if (permits == null) permits = new Semaphore(Math.max(1, maxConcurrent));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) return true;
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !(path.equals("/api/search") || path.equals("/api/knowledge/search"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long wait = takeToken(clientKey(request));
+        if (wait > 0) {
+            count(rejectedRate);
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1));
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, seconds, "检索过于频繁，请稍后再试");
+            return;
+        }
+
+        if (!permits.tryAcquire()) {
+            if (queued.incrementAndGet() > maxQueue) {
+                queued.decrementAndGet();
+                count(rejectedQueueFull);
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1, "检索繁忙，请稍后再试");
+                return;
+            }
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            } finally {
+                queued.decrementAndGet();
+            }
+            if (!acquired) {
+                count(rejectedQueueTimeout);
+                reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1, "检索繁忙，请稍后再试");
+                return;
+            }
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 取令牌；返回 0 表示放行，否则为还要等的纳秒数。
+     */
+    long takeToken(String client) {
+        long now = System.nanoTime();
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(perClientRate, 0.001));
+        long tolerance = interval * (Math.max(1, perClientBurst) - 1L);
+
+        if (sinceSweep.incrementAndGet() >= SWEEP_EVERY) {
+            sinceSweep.set(0);
+            // 桶已满的客户端不用记着，下次来时新建的桶同样是满的
+            buckets.values().removeIf(b -> b.idle(now));
+        }
+        return buckets.computeIfAbsent(client, k -> new Bucket(now)).tryTake(now, interval, tolerance);
+    }
+
+    /**
+     * 已登录的按账号，其余一律按 IP。匿名会话不算：访问任一受保护页面就会新建一个（保存请求后跳登录），
+     * 脚本换着会话就能每次拿到一个满桶。本过滤器在 Spring Security 之前，登录态直接从会话里取。
+     */
+    private static String clientKey(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null
+                && session.getAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY) instanceof SecurityContext ctx
+                && ctx.getAuthentication() != null && ctx.getAuthentication().isAuthenticated()
+                && !(ctx.getAuthentication() instanceof AnonymousAuthenticationToken)) {
+            return "u:" + ctx.getAuthentication().getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds, String message)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("{\"status\":" + status.value() + ",\"error\":\"" + status.getReasonPhrase()
+                + "\",\"message\":\"" + message + "\"}");
+    }
+
+    private static void count(Counter c) {
+        if (c != null) c.increment();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        rejectedRate = rejected(registry, "rate");
+        rejectedQueueFull = rejected(registry, "queue_full");
+        rejectedQueueTimeout = rejected(registry, "queue_timeout");
+        Gauge.builder("kb.search.active", this, f -> f.permits == null ? 0 : f.maxConcurrent - f.permits.availablePermits())
+                .description("正在执行的检索请求数").register(registry);
+        Gauge.builder("kb.search.queued", queued, AtomicInteger::get)
+                .description("排队等待执行的检索请求数").register(registry);
+        Gauge.builder("kb.search.ratelimit.clients", buckets, Map::size)
+                .description("限流跟踪中的客户端数").register(registry);
+    }
+
+    private static Counter rejected(MeterRegistry registry, String reason) {
+        return Counter.builder("kb.search.rejected")
+                .description("被限流或过载保护拒绝的检索请求")
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
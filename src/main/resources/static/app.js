@@ -1,6 +1,7 @@
 const SEARCH_API = "/api/search";
 const ADD_API = "/api/knowledge";
 const IMPORT_API = "/api/knowledge/import";
+const SUGGEST_API = "/api/suggest";
 const TPL_URL = "/kb_stystem_template.xlsx";
 
 // Unified JSON request with cookie and no cache (avoiding /api/me with old account)
@@ -29,6 +30,9 @@ async function apiJson(url, options) {
     }
 }
 
+// 检索/列表接口带 ETag：允许浏览器缓存，但每次都回源确认（/api/me 仍然 no-store）
+const REVALIDATE = { cache: "no-cache" };
+
 // ========= 工具 =========
 const byId = (id) => document.getElementById(id);
 
@@ -100,6 +104,75 @@ function renderTable(rows, q) { // 登陆并渲染表格
     </table>`;
 }
 
+const FIELD_LABELS = {
+    bizName: "业务名称", keywords: "关键词", latestReq: "最新要求", process: "办理流程",
+    penalty: "扣罚标准", basis: "制度依据", caseText: "案例"
+};
+
+function renderSummaryTable(hits, q) { // 精简搜索结果：点击行展开详情
+    const box = byId("table");
+    if (!box) return;
+
+    if (!Array.isArray(hits) || hits.length === 0) {
+        box.innerHTML = `<div class="empty">未找到匹配结果。</div>`;
+        return;
+    }
+
+    box.innerHTML = `
+    <table class="tb">
+        <thead>
+            <tr>
+                <th>分类</th><th>部门</th><th>业务名称</th><th>最新要求下达时间</th><th>命中内容</th>
+            </tr>
+        </thead>
+        <tbody>
+            ${hits.map(h => `
+                <tr class="hit" data-id="${escapeHtml(h.id)}">
+                    <td>${escapeHtml(h.category)}</td>
+                    <td>${escapeHtml(h.department)}</td>
+                    <td>${highlight(h.bizName, q)}</td>
+                    <td>${escapeHtml(h.latestReqDate)}</td>
+                    <td><span class="hint">${escapeHtml(FIELD_LABELS[h.field] || "")}</span> ${highlight(h.snippet, q)}</td>
+                </tr>
+            `).join("")}
+        </tbody>
+    </table>`;
+
+    box.querySelectorAll("tr.hit").forEach(tr => {
+        tr.addEventListener("click", () => toggleDetail(tr, q));
+    });
+}
+
+async function toggleDetail(tr, q) {
+    const next = tr.nextElementSibling;
+    if (next && next.classList.contains("detail")) {
+        next.remove();
+        return;
+    }
+    try {
+        const r = await apiJson(`/api/knowledge/${encodeURIComponent(tr.dataset.id)}`);
+        const row = document.createElement("tr");
+        row.className = "detail";
+        row.innerHTML = `
+            <td colspan="5">
+                <dl class="detail-list">
+                    <dt>办理流程</dt><dd>${highlight(r.process, q)}</dd>
+                    <dt>最新要求</dt><dd>${highlight(r.latestReq, q)}</dd>
+                    <dt>案例</dt><dd>${highlight(r.caseText, q)}</dd>
+                    <dt>扣罚标准</dt><dd>${highlight(r.penalty, q)}</dd>
+                    <dt>制度依据</dt><dd>${highlight(r.basis, q)}</dd>
+                    <dt>关键词</dt><dd>${highlight(r.keywords, q)}</dd>
+                    <dt>维护人</dt><dd>${escapeHtml(r.owner)}</dd>
+                    <dt>更新时间</dt><dd>${escapeHtml(r.updateTime)}</dd>
+                    <dt>状态</dt><dd>${escapeHtml(r.status)}</dd>
+                </dl>
+            </td>`;
+        tr.after(row);
+    } catch (e) {
+        console.error(e);
+        setStatus("加载详情失败：" + e.message);
+    }
+}
 
 function roleUpper(me) {
     return ((me && me.role) ? me.role : "").toUpperCase();
@@ -153,33 +226,6 @@ async function refreshMe() {
     }
 }
 
-// 执行搜索       renderTable(rows, q);
-//     } catch (e) {
-//         console.error(e);
-//         setStatus("搜索失败：" + e.message);
-//     }
-// }
-async function runSearch() {
-    const input = byId("q");
-    const q = input ? input.value.trim() : "";
-    setStatus(q ? "搜索中…" : "加载最新数据中…");
-    try {
-        let rows;
-        if (!q) {
-            // 没有关键字时，默认拉取最新 200 条，方便用户先看到数据
-            rows = await apiJson(`/api/knowledge?limit=200`);
-            setStatus(`显示最近 ${rows.length} 条记录。`);
-        } else {
-            const params = new URLSearchParams({ q });
-            rows = await apiJson(`${SEARCH_API}?${params.toString()}`);
-            setStatus(`找到 ${rows.length} 条结果。`);
-        }
-        renderTable(rows, q);
-    } catch (e) {
-        console.error(e);
-        setStatus("搜索失败：" + e.message);
-    }
-}
 // 执行搜索
 async function runSearch() {
     const input = byId("q");
@@ -189,12 +235,16 @@ async function runSearch() {
         let rows;
         if (!q) {
             // 没有关键字时，默认拉取最新 200 条，方便用户先看到数据
-            rows = await apiJson(`/api/knowledge?limit=200`);
+            // no-cache：浏览器带 If-None-Match 回源确认，数据没变时服务端回 304
+            rows = await apiJson(`/api/knowledge?limit=200`, REVALIDATE);
             setStatus(`显示最近 ${rows.length} 条记录。`);
         } else {
-            const params = new URLSearchParams({ q });
-            rows = await apiJson(`${SEARCH_API}?${params.toString()}`);
-            setStatus(`找到 ${rows.length} 条结果。`);
+            // 精简模式：列表只带片段，点开行再取详情
+            const params = new URLSearchParams({ q, view: "summary" });
+            rows = await apiJson(`${SEARCH_API}?${params.toString()}`, REVALIDATE);
+            setStatus(`找到 ${rows.length} 条结果（按相关度排序，点击行查看详情）。`);
+            renderSummaryTable(rows, q);
+            return;
         }
 
         renderTable(rows, q);
@@ -204,6 +254,28 @@ async function runSearch() {
     }
 }
 
+// 输入联想：停顿 150ms 后按前缀取候选词，填进 datalist
+let suggestTimer = null;
+function scheduleSuggest() {
+    clearTimeout(suggestTimer);
+    suggestTimer = setTimeout(async () => {
+        const input = byId("q");
+        const list = byId("qSuggest");
+        if (!input || !list) return;
+        const prefix = input.value.trim();
+        if (!prefix) {
+            list.innerHTML = "";
+            return;
+        }
+        try {
+            const items = await apiJson(`${SUGGEST_API}?${new URLSearchParams({ prefix, limit: 10 })}`);
+            list.innerHTML = (items || []).map(s => `<option value="${escapeHtml(s.term)}"></option>`).join("");
+        } catch (e) {
+            list.innerHTML = "";
+        }
+    }, 150);
+}
+
 function showExcelMessage(text, isError) {
     const msg = byId("excelMsg");
     if (!msg) return;
@@ -221,6 +293,8 @@ async function importExcel() {
     const file = fileInput.files[0];
     const fd = new FormData();
     fd.append("file", file);
+    const retire = byId("retireMissing");
+    fd.append("retireMissing", retire && retire.checked ? "true" : "false");
 
     try {
         const res = await fetch(IMPORT_API, {
@@ -234,8 +308,19 @@ async function importExcel() {
             throw new Error(text || `HTTP ${res.status}`);
         }
 
-        const data = await res.json();
-        showExcelMessage(`导入成功：新增 ${data.added} 条，更新 ${data.updated} 条。`, false);
+        let job = await res.json();
+        while (job.status === "QUEUED" || job.status === "RUNNING") {
+            showExcelMessage(`导入中：已处理 ${job.rowsProcessed} 行，已入库 ${job.inserted} 条…`, false);
+            await new Promise(r => setTimeout(r, 1000));
+            job = await apiJson(`${IMPORT_API}/${encodeURIComponent(job.jobId)}`);
+        }
+        if (job.status === "FAILED") {
+            throw new Error(job.error || "导入失败");
+        }
+
+        const warn = (job.warnings && job.warnings.length) ? `（${job.warnings.join("；")}）` : "";
+        showExcelMessage(`导入成功：新增 ${job.inserted} 条，更新 ${job.updated} 条，未变 ${job.unchanged} 条，`
+            + `跳过 ${job.skipped} 条，作废 ${job.retired} 条。${warn}`, false);
         runSearch();
     } catch (e) {
         console.error("Excel 导入失败", e);
@@ -291,6 +376,7 @@ document.addEventListener("DOMContentLoaded", () => {
 
     const searchInput = byId("q");
     if (searchInput) {
+        searchInput.addEventListener("input", scheduleSuggest);
         searchInput.addEventListener("keypress", (e) => {
             if (e.key === "Enter") {
                 e.preventDefault();
@@ -0,0 +1,89 @@
+package com.bank.kb.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KnowledgeBodyMigrationTest {
+
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void freshDatabase() {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(ds);
+        // ddl-auto=update 启动后会先建好新表
+        jdbc.execute("create table knowledge_record_body (id bigint primary key, process clob, latest_req clob,"
+                + " case_text clob, penalty clob, basis clob, keywords clob)");
+    }
+
+    @Test
+    void copiesLegacyColumnsThenDropsThem() {
+        jdbc.execute("create table knowledge_record (id bigint primary key, biz_name varchar(200), process clob,"
+                + " latest_req clob, case_text clob, penalty clob, basis clob, keywords clob)");
+        jdbc.update("insert into knowledge_record values (1, '贷款审批', '流程1', '要求1', '案例1', '扣罚1', '依据1', '放款')");
+        jdbc.update("insert into knowledge_record values (2, '门禁管理', '流程2', null, null, null, null, '门禁')");
+        // 上次搬到一半：已有正文的不覆盖
+        jdbc.update("insert into knowledge_record_body (id, process, keywords) values (2, '已搬过', '门禁')");
+
+        new KnowledgeBodyMigration(jdbc).run();
+
+        Map<String, Object> one = jdbc.queryForMap("select * from knowledge_record_body where id = 1");
+        assertEquals("流程1", one.get("PROCESS"));
+        assertEquals("要求1", one.get("LATEST_REQ"));
+        assertEquals("案例1", one.get("CASE_TEXT"));
+        assertEquals("扣罚1", one.get("PENALTY"));
+        assertEquals("依据1", one.get("BASIS"));
+        assertEquals("放款", one.get("KEYWORDS"));
+        assertEquals("已搬过", jdbc.queryForObject("select process from knowledge_record_body where id = 2", String.class));
+        assertEquals(List.of("id", "biz_name"), columns());
+    }
+
+    @Test
+    void resumesWhenOnlySomeLegacyColumnsAreLeft() {
+        // 上次拷完、删列删到 penalty 时中断
+        jdbc.execute("create table knowledge_record (id bigint primary key, biz_name varchar(200), penalty clob, basis clob)");
+        jdbc.update("insert into knowledge_record values (1, '贷款审批', '扣罚1', '依据1')");
+        jdbc.update("insert into knowledge_record_body (id, penalty, basis) values (1, '扣罚1', '依据1')");
+
+        new KnowledgeBodyMigration(jdbc).run();
+
+        assertEquals(List.of("id", "biz_name"), columns());
+        assertEquals(1, jdbc.queryForObject("select count(*) from knowledge_record_body", Integer.class));
+        assertEquals("扣罚1", jdbc.queryForObject("select penalty from knowledge_record_body where id = 1", String.class));
+    }
+
+    @Test
+    void doesNothingOnTheNewSchema() {
+        jdbc.execute("create table knowledge_record (id bigint primary key, biz_name varchar(200))");
+        jdbc.update("insert into knowledge_record values (1, '贷款审批')");
+        jdbc.update("insert into knowledge_record_body (id, process) values (1, '流程1')");
+
+        new KnowledgeBodyMigration(jdbc).run();
+        new KnowledgeBodyMigration(jdbc).run();
+
+        assertEquals(List.of("id", "biz_name"), columns());
+        assertEquals(1, jdbc.queryForObject("select count(*) from knowledge_record_body", Integer.class));
+        assertEquals("流程1", jdbc.queryForObject("select process from knowledge_record_body where id = 1", String.class));
+    }
+
+    private List<String> columns() {
+        return jdbc.query("select * from knowledge_record where 1 = 0", rs -> {
+            List<String> out = new ArrayList<>();
+            for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                out.add(rs.getMetaData().getColumnName(i).toLowerCase(Locale.ROOT));
+            }
+            return out;
+        });
+    }
+}
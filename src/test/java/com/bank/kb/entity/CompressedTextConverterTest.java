@@ -0,0 +1,35 @@
+package com.bank.kb.entity;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedTextConverterTest {
+
+    private static final String LONG = "客户申请贷款，客户经理受理后提交审查岗审查，审查通过后报审批人审批。".repeat(40);
+
+    @Test
+    void packsLongTextAndReadsBothFormats() {
+        CompressedTextConverter c = new CompressedTextConverter(true, 512);
+
+        String packed = c.convertToDatabaseColumn(LONG);
+        assertTrue(CompressedTextConverter.isPacked(packed));
+        assertTrue(packed.length() < LONG.length());
+        assertEquals(LONG, c.convertToEntityAttribute(packed));
+
+        // 老数据、短文本都是明文，原样读写
+        assertEquals(LONG, c.convertToEntityAttribute(LONG));
+        assertEquals("短流程", c.convertToDatabaseColumn("短流程"));
+        assertNull(c.convertToDatabaseColumn(null));
+        assertNull(c.convertToEntityAttribute(null));
+    }
+
+    @Test
+    void writesPlainTextWhenDisabledButStillReadsPackedRows() {
+        String packed = new CompressedTextConverter(true, 512).convertToDatabaseColumn(LONG);
+        CompressedTextConverter off = new CompressedTextConverter(false, 512);
+
+        assertEquals(LONG, off.convertToDatabaseColumn(LONG));
+        assertEquals(LONG, off.convertToEntityAttribute(packed));
+    }
+}
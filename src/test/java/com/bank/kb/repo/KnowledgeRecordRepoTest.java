@@ -0,0 +1,110 @@
+package com.bank.kb.repo;
+
+import com.bank.kb.entity.CompressedTextConverter;
+import com.bank.kb.entity.KnowledgeRecord;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 表头/正文拆表后的映射：内嵌 H2（MySQL 模式），只起 JPA 相关的 bean。
+ */
+@DataJpaTest(properties = "spring.datasource.url=jdbc:h2:mem:kbrepo;MODE=MySQL;DB_CLOSE_DELAY=-1")
+class KnowledgeRecordRepoTest {
+
+    // 不用 KbApplication：那里的初始化 bean 要安全配置
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan("com.bank.kb.entity")
+    @EnableJpaRepositories("com.bank.kb.repo")
+    static class Config {}
+
+    @Autowired
+    KnowledgeRecordRepo repo;
+
+    @Autowired
+    EntityManager em;
+
+    @Test
+    void builderRecordRoundTripsWithItsBody() {
+        KnowledgeRecord saved = repo.saveAndFlush(KnowledgeRecord.builder()
+                .category("信贷与风险类").department("信贷管理部").bizName("贷款审批")
+                .process("受理、审查、审批").latestReq("最新要求").caseText("案例").penalty("扣罚")
+                .basis("制度依据").keywords("放款、授信")
+                .build());
+        em.clear();
+
+        List<KnowledgeRecord> found = repo.findWithBodyByIdIn(List.of(saved.getId()));
+        em.clear();
+
+        assertEquals(1, found.size());
+        KnowledgeRecord r = found.get(0);
+        assertEquals("贷款审批", r.getBizName());
+        assertEquals("受理、审查、审批", r.getProcess());
+        assertEquals("最新要求", r.getLatestReq());
+        assertEquals("案例", r.getCaseText());
+        assertEquals("扣罚", r.getPenalty());
+        assertEquals("制度依据", r.getBasis());
+        assertEquals("放款、授信", r.getKeywords());
+        assertEquals(r.getProcess(), repo.findWithBodyById(saved.getId()).orElseThrow().getProcess());
+    }
+
+    @Test
+    void snippetsIgnoreCompressedBodyText() {
+        String longText = "ATM 机具巡检：每日核对钞箱、日志与监控录像。".repeat(40);
+        String packed = new CompressedTextConverter(true, 512).convertToDatabaseColumn(longText);
+        assertTrue(CompressedTextConverter.isPacked(packed));
+        // 取压缩串里的一段字母，模拟拼音首字母/英文缩写检索
+        String kw = packed.substring(CompressedTextConverter.PREFIX.length()).replaceAll("[^A-Za-z]", "").substring(0, 2);
+
+        KnowledgeRecord packedRow = repo.saveAndFlush(KnowledgeRecord.builder()
+                .category("运营类").department("运营管理部").bizName("机具管理").process("流程")
+                .build());
+        KnowledgeRecord plainRow = repo.saveAndFlush(KnowledgeRecord.builder()
+                .category("运营类").department("运营管理部").bizName("柜面管理").basis("依据 " + kw + " 条款")
+                .build());
+        em.createNativeQuery("update knowledge_record_body set process = ? where id = ?")
+                .setParameter(1, packed).setParameter(2, packedRow.getId()).executeUpdate();
+        em.clear();
+
+        Map<Long, KnowledgeSnippetView> byId = new HashMap<>();
+        for (KnowledgeSnippetView v : repo.findSnippets(List.of(packedRow.getId(), plainRow.getId()), kw,
+                CompressedTextConverter.PREFIX)) {
+            byId.put(v.getId(), v);
+        }
+
+        // 压缩行不算命中，回落到 bizName，由 SearchService 解压后再截
+        assertEquals("bizName", byId.get(packedRow.getId()).getField());
+        assertEquals("机具管理", byId.get(packedRow.getId()).getSnippet());
+        // 明文照常在数据库端命中
+        assertEquals("basis", byId.get(plainRow.getId()).getField());
+        assertTrue(byId.get(plainRow.getId()).getSnippet().contains(kw));
+    }
+
+    @Test
+    void idStatsCoverEveryHeaderRow() {
+        KnowledgeIdStatsView empty = repo.findIdStats();
+        assertEquals(0L, empty.getCount());
+        assertEquals(0L, empty.getMaxId());
+        assertEquals(0L, empty.getIdSum());
+
+        long a = repo.saveAndFlush(KnowledgeRecord.builder().category("运营类").department("运营管理部").bizName("印章管理").build()).getId();
+        long b = repo.saveAndFlush(KnowledgeRecord.builder().category("运营类").department("运营管理部").bizName("门禁管理").build()).getId();
+
+        KnowledgeIdStatsView v = repo.findIdStats();
+        assertEquals(2L, v.getCount());
+        assertEquals(Math.max(a, b), v.getMaxId());
+        assertEquals(a + b, v.getIdSum());
+    }
+}
@@ -0,0 +1,99 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.CompressedTextConverter;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BodyCompressionJobTest {
+
+    private static final String LONG = "受理、审查、审批、放款，按制度逐级复核。".repeat(40);
+    private static final Timestamp UPDATED = Timestamp.valueOf(LocalDateTime.of(2025, 12, 16, 9, 30));
+
+    private JdbcTemplate jdbc;
+    private BodyCompressionJob job;
+
+    @BeforeEach
+    void freshDatabase() {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(ds);
+        jdbc.execute("create table knowledge_record (id bigint primary key, biz_name varchar(200), updated_at timestamp)");
+        jdbc.execute("create table knowledge_record_body (id bigint primary key, process clob, latest_req clob,"
+                + " case_text clob, penalty clob, basis clob, keywords clob)");
+        job = newJob(true);
+    }
+
+    private BodyCompressionJob newJob(boolean compress) {
+        BodyCompressionJob j = new BodyCompressionJob(jdbc, new TransactionTemplate(new DataSourceTransactionManager(jdbc.getDataSource())));
+        ReflectionTestUtils.setField(j, "compress", compress);
+        ReflectionTestUtils.setField(j, "minChars", 512);
+        ReflectionTestUtils.setField(j, "batchSize", 2);
+        return j;
+    }
+
+    private void insert(long id, String process, String caseText) {
+        jdbc.update("insert into knowledge_record values (?, ?, ?)", id, "业务" + id, UPDATED);
+        jdbc.update("insert into knowledge_record_body (id, process, case_text, latest_req) values (?, ?, ?, ?)",
+                id, process, caseText, LONG);
+    }
+
+    private String column(String col, long id) {
+        return jdbc.queryForObject("select " + col + " from knowledge_record_body where id = ?", String.class, id);
+    }
+
+    @Test
+    void packsLongPlainTextAndLeavesTheRestAlone() {
+        String packed = new CompressedTextConverter(true, 512).convertToDatabaseColumn(LONG + "已压缩");
+        insert(1, LONG, "短案例");
+        insert(2, packed, null);
+        insert(3, "短流程", null);
+        insert(4, null, LONG);
+        insert(5, "短流程", "短案例");
+
+        assertEquals(2, job.run());
+
+        CompressedTextConverter codec = new CompressedTextConverter();
+        assertTrue(CompressedTextConverter.isPacked(column("process", 1)));
+        assertEquals(LONG, codec.convertToEntityAttribute(column("process", 1)));
+        assertEquals("短案例", column("case_text", 1));
+        assertEquals(packed, column("process", 2));
+        assertEquals("短流程", column("process", 3));
+        assertEquals(LONG, codec.convertToEntityAttribute(column("case_text", 4)));
+        // 最新要求不在压缩列里
+        assertEquals(LONG, column("latest_req", 1));
+        // 只改正文表，表头的 updatedAt 不动（不进变更流）
+        assertEquals(5, jdbc.queryForObject("select count(*) from knowledge_record where updated_at = ?", Integer.class, UPDATED));
+    }
+
+    @Test
+    void skipsTheScanOnceFinishedUntilCompressionIsTurnedOff() {
+        insert(1, LONG, null);
+        assertEquals(1, job.run());
+
+        // 完成后再启动不再扫：直接写进库的明文也不会被读到
+        jdbc.update("update knowledge_record_body set process = ? where id = 1", LONG);
+        assertEquals(0, job.run());
+        assertEquals(LONG, column("process", 1));
+
+        // 以关闭压缩启动过一次后，再开启要重扫
+        newJob(false).start();
+        assertEquals(1, job.run());
+        assertTrue(CompressedTextConverter.isPacked(column("process", 1)));
+
+        // min-chars 调小也重扫
+        ReflectionTestUtils.setField(job, "minChars", 256);
+        jdbc.update("update knowledge_record_body set process = ? where id = 1", LONG);
+        assertEquals(1, job.run());
+    }
+}
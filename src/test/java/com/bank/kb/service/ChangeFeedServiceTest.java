@@ -0,0 +1,92 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import com.bank.kb.repo.KnowledgeRecordRepo;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ChangeFeedServiceTest {
+
+    private static final LocalDateTime T = LocalDateTime.of(2025, 12, 16, 9, 30, 0, 123_456_000);
+
+    private final KnowledgeRecordRepo repo = mock(KnowledgeRecordRepo.class);
+    private final ChangeFeedService feed = new ChangeFeedService(repo);
+
+    private static KnowledgeRecord row(long id, LocalDateTime updatedAt) {
+        return KnowledgeRecord.builder().id(id).bizName("业务" + id).updatedAt(updatedAt).build();
+    }
+
+    @Test
+    void pagesByWatermarkAndReportsHasMore() {
+        when(repo.findChangedAfter(any(), anyLong(), any(), any()))
+                .thenReturn(List.of(row(1, T), row(2, T), row(3, T.plusSeconds(1))));
+
+        ChangeFeedService.ChangeBatch<KnowledgeRecord> first = feed.changesSince(null, 2);
+
+        // 多取一条判断 hasMore，多出的那条不返回，水位停在第二条
+        ArgumentCaptor<Pageable> page = ArgumentCaptor.forClass(Pageable.class);
+        verify(repo).findChangedAfter(eq(LocalDateTime.of(1970, 1, 1, 0, 0)), eq(0L), any(), page.capture());
+        assertEquals(3, page.getValue().getPageSize());
+        assertEquals(List.of(1L, 2L), first.items().stream().map(KnowledgeRecord::getId).toList());
+        assertTrue(first.hasMore());
+        assertEquals(new SeekCursor.ChangeKey(T, 2), SeekCursor.parseChange(first.watermark()));
+
+        when(repo.findChangedAfter(any(), anyLong(), any(), any())).thenReturn(List.of(row(3, T.plusSeconds(1))));
+        ChangeFeedService.ChangeBatch<KnowledgeRecord> second = feed.changesSince(first.watermark(), 2);
+
+        verify(repo).findChangedAfter(eq(T), eq(2L), any(), any());
+        assertFalse(second.hasMore());
+        assertEquals(new SeekCursor.ChangeKey(T.plusSeconds(1), 3), SeekCursor.parseChange(second.watermark()));
+    }
+
+    @Test
+    void holdsBackRowsNewerThanTheSettleWindow() {
+        when(repo.findChangedAfter(any(), anyLong(), any(), any())).thenReturn(List.of());
+
+        LocalDateTime before = LocalDateTime.now();
+        ChangeFeedService.ChangeBatch<KnowledgeRecord> batch = feed.changesSince("2025-01-01", 10);
+        LocalDateTime after = LocalDateTime.now();
+
+        ArgumentCaptor<LocalDateTime> until = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repo).findChangedAfter(eq(LocalDateTime.of(2025, 1, 1, 0, 0)), eq(0L), until.capture(), any());
+        assertFalse(until.getValue().isBefore(before.minusSeconds(30)));
+        assertFalse(until.getValue().isAfter(after.minusSeconds(30)));
+
+        // 没有新变更时水位不动：等于请求的时间点
+        assertTrue(batch.items().isEmpty());
+        assertFalse(batch.hasMore());
+        assertEquals(new SeekCursor.ChangeKey(LocalDateTime.of(2025, 1, 1, 0, 0), 0),
+                SeekCursor.parseChange(batch.watermark()));
+    }
+
+    @Test
+    void acceptsIsoTimeAndRejectsOtherCursors() {
+        when(repo.findChangedAfter(any(), anyLong(), any(), any())).thenReturn(List.of());
+
+        feed.changesSince(" 2025-01-01T08:00:00 ", 10);
+        verify(repo).findChangedAfter(eq(LocalDateTime.of(2025, 1, 1, 8, 0)), eq(0L), any(), any());
+
+        String listCursor = SeekCursor.of(new SeekCursor.ListKey(null, 7));
+        assertThrows(IllegalArgumentException.class, () -> feed.changesSince(listCursor, 10));
+        assertThrows(IllegalArgumentException.class, () -> feed.changesSince("昨天", 10));
+    }
+
+    @Test
+    void settleWindowMustOutlastTheImportBatchTimeout() {
+        assertDoesNotThrow(feed::checkSettleWindow);
+
+        ReflectionTestUtils.setField(feed, "settleSeconds", 20L);
+        assertThrows(IllegalStateException.class, feed::checkSettleWindow);
+    }
+}
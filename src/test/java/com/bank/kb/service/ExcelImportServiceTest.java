@@ -0,0 +1,233 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import com.bank.kb.repo.KnowledgeKeyView;
+import com.bank.kb.repo.KnowledgeRecordRepo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ExcelImportServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamsRowsAfterInstructionHeader() throws Exception {
+        Path xlsx = dir.resolve("dept.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(xlsx)) {
+            Sheet sheet = wb.createSheet("信贷");
+            sheet.createRow(0).createCell(0).setCellValue("填写说明：带*为必填");
+            Row header = sheet.createRow(1);
+            String[] names = {"部门", "业务名称（必填）", "最新要求下达时间", "关键词*"};
+            for (int i = 0; i < names.length; i++) header.createCell(i).setCellValue(names[i]);
+
+            Row r1 = sheet.createRow(2);
+            r1.createCell(0).setCellValue("信贷管理部");
+            r1.createCell(1).setCellValue("贷款审批");
+            r1.createCell(2).setCellValue("2025/12/16");
+            r1.createCell(3).setCellValue("审批,放款");
+
+            sheet.createRow(3).createCell(0).setCellValue("信贷管理部"); // 业务名称为空 -> skipped
+            sheet.createRow(5).createCell(1).setCellValue("贷后检查");
+            wb.createSheet("说明").createRow(0).createCell(0).setCellValue("无表头");
+            wb.write(out);
+        }
+
+        KnowledgeRecordRepo repo = mock(KnowledgeRecordRepo.class);
+        List<KnowledgeRecord> saved = new ArrayList<>();
+        when(repo.saveAll(any())).thenAnswer(inv -> {
+            List<KnowledgeRecord> batch = new ArrayList<>(inv.getArgument(0));
+            saved.addAll(batch);
+            return batch;
+        });
+        TransactionTemplate tx = mock(TransactionTemplate.class);
+        when(tx.execute(any())).thenAnswer(inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+
+        ExcelImportService svc = new ExcelImportService(repo, mock(ApplicationEventPublisher.class), tx, new SimpleMeterRegistry());
+        ExcelImportService.ImportResult res = svc.importExcel(xlsx, "dept.xlsx", "科技部");
+
+        assertEquals(2, res.inserted());
+        assertEquals(1, res.skipped());
+        assertEquals(1, res.warnings().size());
+
+        KnowledgeRecord first = saved.get(0);
+        assertEquals("贷款审批", first.getBizName());
+        assertEquals("信贷与风险类", first.getCategory());
+        assertEquals(LocalDate.of(2025, 12, 16), first.getLatestReqDate());
+        assertEquals(3, first.getRowNo());
+        assertEquals("信贷", first.getSheetName());
+
+        KnowledgeRecord second = saved.get(1);
+        assertEquals("科技部", second.getDepartment());
+        assertEquals(6, second.getRowNo());
+        assertNotNull(first.getContentHash());
+    }
+
+    @Test
+    void contentHashIgnoresProvenance() {
+        KnowledgeRecord a = KnowledgeRecord.builder().bizName("贷款审批").process("流程").rowNo(3).sourceFile("a.xlsx").build();
+        KnowledgeRecord b = KnowledgeRecord.builder().bizName("贷款审批").process("流程").rowNo(9).sourceFile("b.xlsx").build();
+        KnowledgeRecord c = KnowledgeRecord.builder().bizName("贷款审批").process("新流程").build();
+
+        assertEquals(ExcelImportService.contentHash(a), ExcelImportService.contentHash(b));
+        assertNotEquals(ExcelImportService.contentHash(a), ExcelImportService.contentHash(c));
+    }
+
+    @Test
+    void headerAndDateParsingWithoutRegex() {
+        assertEquals("业务名称", ExcelImportService.normalizeHeader("业务名称 *"));
+        assertEquals("最新要求下达时间", ExcelImportService.normalizeHeader("最新要求下达时间（可空，YYYY-MM-DD）"));
+        assertEquals("状态", ExcelImportService.normalizeHeader(" 状\n态(可空) "));
+        assertEquals("部门（", ExcelImportService.normalizeHeader("部门（"));
+
+        assertEquals(LocalDate.of(2025, 12, 16), ExcelImportService.parseDate(" 2025.12.16 "));
+        assertEquals(LocalDate.of(2025, 1, 6), ExcelImportService.parseDate("2025/1/6"));
+        assertEquals(LocalDate.of(2025, 2, 28), ExcelImportService.parseDate("2025-2-30"));
+        assertNull(ExcelImportService.parseDate("2025-13-01"));
+        assertNull(ExcelImportService.parseDate("25-1-1"));
+        assertNull(ExcelImportService.parseDate("2025-1-1 10:00"));
+        assertNull(ExcelImportService.parseDate("不是日期"));
+
+        assertEquals(0, ExcelImportService.columnIndex("A3"));
+        assertEquals(27, ExcelImportService.columnIndex("AB12"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void parallelSheetsCommitInWorkbookOrder() throws Exception {
+        Path xlsx = dir.resolve("many.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(xlsx)) {
+            for (int s = 0; s < 6; s++) {
+                Sheet sheet = wb.createSheet("S" + s);
+                sheet.createRow(0).createCell(0).setCellValue("业务名称");
+                for (int r = 1; r <= 700; r++) sheet.createRow(r).createCell(0).setCellValue("业务" + s + "-" + r);
+            }
+            wb.createSheet("空白");
+            wb.write(out);
+        }
+
+        KnowledgeRecordRepo repo = mock(KnowledgeRecordRepo.class);
+        List<KnowledgeRecord> saved = new ArrayList<>();
+        when(repo.saveAll(any())).thenAnswer(inv -> {
+            List<KnowledgeRecord> out = new ArrayList<>();
+            for (KnowledgeRecord r : (Iterable<KnowledgeRecord>) inv.getArgument(0)) out.add(r);
+            saved.addAll(out);
+            return out;
+        });
+        TransactionTemplate tx = mock(TransactionTemplate.class);
+        when(tx.execute(any())).thenAnswer(inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+
+        ExcelImportService svc = new ExcelImportService(repo, mock(ApplicationEventPublisher.class), tx, new SimpleMeterRegistry());
+        ExcelImportService.ImportResult res = svc.importExcel(xlsx, "many.xlsx", "科技部");
+
+        assertEquals(4200, res.inserted());
+        assertEquals(List.of("Sheet【空白】未找到表头行（需要包含“业务名称”），已跳过。"), res.warnings());
+        for (int i = 0; i < saved.size(); i++) {
+            KnowledgeRecord r = saved.get(i);
+            assertEquals("S" + (i / 700), r.getSheetName());
+            assertEquals(i % 700 + 2, r.getRowNo());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportedWorkbookReimportsUnchanged() throws Exception {
+        KnowledgeRecord a = KnowledgeRecord.builder().category("信贷与风险类").department("信贷管理部").bizName("贷款审批")
+                .process("受理\n审批").latestReqDate(LocalDate.of(2025, 12, 16)).keywords("审批,放款").status("有效").sheetName("信贷").build();
+        KnowledgeRecord b = KnowledgeRecord.builder().category("保障类").department("科技部").bizName("门禁管理")
+                .latestReq("双人复核").status("有效").sheetName("安保").build();
+        KnowledgeRecord c = KnowledgeRecord.builder().category("保障类").department("科技部").bizName("机房巡检").status("停用").build();
+
+        Path xlsx = dir.resolve("export.xlsx");
+        try (var tpl = getClass().getResourceAsStream("/static/kb_stystem_template.xlsx");
+             TemplateWorkbookWriter writer = new TemplateWorkbookWriter(tpl, 2);
+             OutputStream out = Files.newOutputStream(xlsx)) {
+            for (KnowledgeRecord r : List.of(a, b, c)) writer.write(r);
+            writer.finish(out);
+            assertEquals(3, writer.rows());
+        }
+
+        KnowledgeRecordRepo repo = mock(KnowledgeRecordRepo.class);
+        List<KnowledgeRecord> saved = new ArrayList<>();
+        when(repo.saveAll(any())).thenAnswer(inv -> {
+            List<KnowledgeRecord> batch = new ArrayList<>(inv.getArgument(0));
+            saved.addAll(batch);
+            return batch;
+        });
+        // c 是页面新增的（库里没有 Sheet 名），导回来应认领原记录而不是新增一条
+        KnowledgeKeyView existing = mock(KnowledgeKeyView.class);
+        when(existing.getId()).thenReturn(7L);
+        when(existing.getDepartment()).thenReturn("科技部");
+        when(existing.getBizName()).thenReturn("机房巡检");
+        when(existing.getContentHash()).thenReturn(ExcelImportService.contentHash(c));
+        when(repo.findByDepartmentInAndBizNameIn(any(), any())).thenReturn(List.of(existing));
+        TransactionTemplate tx = mock(TransactionTemplate.class);
+        when(tx.execute(any())).thenAnswer(inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+
+        ExcelImportService svc = new ExcelImportService(repo, mock(ApplicationEventPublisher.class), tx, new SimpleMeterRegistry());
+        ExcelImportService.ImportResult res = svc.importExcel(xlsx, "export.xlsx", null);
+
+        assertEquals(2, res.inserted());
+        assertEquals(1, res.unchanged());
+        assertEquals(0, res.skipped());
+        for (KnowledgeRecord orig : List.of(a, b)) {
+            KnowledgeRecord back = saved.stream().filter(r -> r.getBizName().equals(orig.getBizName())).findFirst().orElseThrow();
+            assertEquals(ExcelImportService.contentHash(orig), back.getContentHash(), orig.getBizName());
+            assertEquals(orig.getDepartment(), back.getDepartment());
+        }
+        // 按原 Sheet 分开写，导回来行键不变；没有 Sheet 名的落在模板自带的 Sheet
+        assertEquals("信贷", saved.stream().filter(r -> r.getBizName().equals("贷款审批")).findFirst().orElseThrow().getSheetName());
+        assertEquals("安保", saved.stream().filter(r -> r.getBizName().equals("门禁管理")).findFirst().orElseThrow().getSheetName());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchSlowerThanTheTimeoutIsRolledBackAndNotPublished() throws Exception {
+        Path xlsx = dir.resolve("slow.xlsx");
+        try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(xlsx)) {
+            Sheet sheet = wb.createSheet("信贷");
+            sheet.createRow(0).createCell(0).setCellValue("业务名称");
+            sheet.createRow(1).createCell(0).setCellValue("贷款审批");
+            wb.write(out);
+        }
+
+        KnowledgeRecordRepo repo = mock(KnowledgeRecordRepo.class);
+        when(repo.saveAll(any())).thenAnswer(inv -> {
+            Thread.sleep(20);
+            return new ArrayList<>((Collection<KnowledgeRecord>) inv.getArgument(0));
+        });
+        TransactionTemplate tx = mock(TransactionTemplate.class);
+        when(tx.execute(any())).thenAnswer(inv -> ((TransactionCallback<?>) inv.getArgument(0)).doInTransaction(null));
+        ApplicationEventPublisher events = mock(ApplicationEventPublisher.class);
+
+        ExcelImportService svc = new ExcelImportService(repo, events, tx, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(svc, "batchTimeoutSeconds", 0L);
+
+        // 超时在事务回调里抛出：事务回滚，不发变更事件（不进索引、变更流）
+        RuntimeException e = assertThrows(RuntimeException.class, () -> svc.importExcel(xlsx, "slow.xlsx", null));
+        assertTrue(e.getMessage().contains("超时"), e.getMessage());
+        verify(repo).flush();
+        verify(events, never()).publishEvent(any());
+    }
+}
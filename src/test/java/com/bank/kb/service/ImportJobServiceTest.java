@@ -0,0 +1,50 @@
+package com.bank.kb.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ImportJobServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void brokenUploadLeavesNoTempFile() throws IOException {
+        ImportJobService service = new ImportJobService(mock(ExcelImportService.class));
+        ReflectionTestUtils.setField(service, "tempDir", dir.toString());
+        // 读到一半连接断了
+        MockMultipartFile upload = new MockMultipartFile("file", "dept.xlsx", null, new byte[0]) {
+            @Override
+            public InputStream getInputStream() {
+                return new InputStream() {
+                    private int sent = 0;
+
+                    @Override
+                    public int read() throws IOException {
+                        if (sent >= 1024) throw new IOException("连接已断开");
+                        sent++;
+                        return 0;
+                    }
+                };
+            }
+        };
+
+        IOException e = assertThrows(IOException.class, () -> service.submit(upload, "信贷管理部", false));
+        assertEquals("连接已断开", e.getMessage());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(), files.toList());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import com.bank.kb.repo.KnowledgeIdStatsView;
+import com.bank.kb.repo.KnowledgeRecordRepo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class IndexSnapshotTest {
+
+    private static KnowledgeRecord rec(long id, String dept, String bizName, String process, LocalDate date) {
+        return KnowledgeRecord.builder()
+                .id(id)
+                .department(dept)
+                .category("信贷与风险类")
+                .bizName(bizName)
+                .process(process)
+                .latestReqDate(date)
+                .build();
+    }
+
+    @Test
+    void snapshotRoundTripRestoresSearchAndAcceptsUpdates(@TempDir Path dir) throws Exception {
+        KnowledgeIndex index = new KnowledgeIndex(null, null, null);
+        index.indexAll(List.of(
+                rec(1, "信贷管理部", "贷款审批", null, LocalDate.of(2024, 1, 1)),
+                rec(2, "信贷管理部", "贷款", "审批流程", LocalDate.of(2025, 1, 1)),
+                rec(3, "风险管理部", "门禁管理", "贷款审批复核", null)
+        ));
+        index.indexAll(List.of(rec(2, "信贷管理部", "贷款审批要点", null, LocalDate.of(2025, 1, 1))));
+        Path file = dir.resolve("kb-index.snap");
+        index.saveSnapshot(file);
+
+        KnowledgeIndex restored = new KnowledgeIndex(null, null, null);
+        assertNotNull(restored.loadSnapshot(file));
+        assertEquals(3, restored.size());
+        assertEquals(index.search("贷款审批", null, null, 10), restored.search("贷款审批", null, null, 10));
+        assertEquals(List.of(3L), restored.search("门禁", null, "风险管理部", 10));
+
+        // 恢复后继续增量更新（回放）
+        restored.indexAll(List.of(rec(3, "风险管理部", "机房巡检", null, null)));
+        assertTrue(restored.search("门禁", null, null, 10).isEmpty());
+        assertEquals(List.of(3L), restored.search("巡检", null, null, 10));
+
+        // 损坏的快照不能被当成可用
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(java.io.IOException.class, () -> new KnowledgeIndex(null, null, null).loadSnapshot(file));
+    }
+
+    @Test
+    void startRestoresFromSnapshotAndReplaysLaterChanges(@TempDir Path dir) throws Exception {
+        Path file = snapshotOf(dir, rec(1, "信贷管理部", "贷款审批", null, null),
+                rec(2, "信贷管理部", "贷后检查", null, null), rec(3, "风险管理部", "门禁管理", null, null));
+
+        KnowledgeRecordRepo repo = mock(KnowledgeRecordRepo.class);
+        when(repo.findTop500ByUpdatedAtAfterAndIdGreaterThanOrderByIdAsc(any(), anyLong()))
+                .thenReturn(List.of(rec(3, "风险管理部", "机房巡检", null, null), rec(4, "运营管理部", "印章管理", null, null)));
+        KnowledgeIdStatsView stats = stats(4, 4, 10);
+        when(repo.findIdStats()).thenReturn(stats);
+        ApplicationEventPublisher events = mock(ApplicationEventPublisher.class);
+        KnowledgeIndex index = indexAt(file, repo, events);
+
+        index.start();
+        try {
+            verify(repo, never()).findTop500ByIdGreaterThanOrderByIdAsc(anyLong());
+            verify(events).publishEvent(any(KnowledgeIndexReadyEvent.class));
+            assertTrue(index.isReady());
+            assertEquals(4, index.size());
+            assertEquals(List.of(1L), index.search("贷款审批", null, null, 10));
+            assertEquals(List.of(3L), index.search("巡检", null, null, 10));
+            assertTrue(index.search("门禁", null, null, 10).isEmpty());
+            assertEquals(List.of(4L), index.search("印章", null, null, 10));
+        } finally {
+            index.stop();
+        }
+    }
+
+    @Test
+    void startRebuildsWhenIdsDoNotMatchEvenIfCountDoes(@TempDir Path dir) throws Exception {
+        Path file = snapshotOf(dir, rec(1, "信贷管理部", "贷款审批", null, null),
+                rec(2, "信贷管理部", "贷后检查", null, null), rec(3, "风险管理部", "门禁管理", null, null));
+
+        // 库里删了 2、多了一条 updatedAt 早于回放起点的 4：记录数仍是 3，回放也取不到 4
+        KnowledgeRecordRepo repo = mock(KnowledgeRecordRepo.class);
+        when(repo.findTop500ByUpdatedAtAfterAndIdGreaterThanOrderByIdAsc(any(), anyLong())).thenReturn(List.of());
+        KnowledgeIdStatsView stats = stats(3, 4, 8);
+        when(repo.findIdStats()).thenReturn(stats);
+        List<KnowledgeRecord> db = List.of(rec(1, "信贷管理部", "贷款审批", null, null),
+                rec(3, "风险管理部", "门禁管理", null, null), rec(4, "运营管理部", "印章管理", null, null));
+        when(repo.findTop500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(db);
+        ApplicationEventPublisher events = mock(ApplicationEventPublisher.class);
+        KnowledgeIndex index = indexAt(file, repo, events);
+
+        index.start();
+        try {
+            verify(repo).findTop500ByIdGreaterThanOrderByIdAsc(0L);
+            verify(events, times(1)).publishEvent(any(KnowledgeIndexReadyEvent.class));
+            assertTrue(index.isReady());
+            assertEquals(3, index.size());
+            assertTrue(index.search("贷后", null, null, 10).isEmpty());
+            assertEquals(List.of(4L), index.search("印章", null, null, 10));
+        } finally {
+            index.stop();
+        }
+    }
+
+    @Test
+    void startRebuildsWhenSnapshotIsMissingOrCorrupt(@TempDir Path dir) throws Exception {
+        Path file = snapshotOf(dir, rec(1, "信贷管理部", "贷款审批", null, null));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        for (Path snap : List.of(file, dir.resolve("missing.snap"))) {
+            KnowledgeRecordRepo repo = mock(KnowledgeRecordRepo.class);
+            when(repo.findTop500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(List.of(rec(7, "运营管理部", "印章管理", null, null)));
+            KnowledgeIndex index = indexAt(snap, repo, mock(ApplicationEventPublisher.class));
+
+            index.start();
+            try {
+                verify(repo, never()).findIdStats();
+                assertEquals(List.of(7L), index.search("印章", null, null, 10));
+                assertTrue(index.search("贷款", null, null, 10).isEmpty());
+            } finally {
+                index.stop();
+            }
+        }
+    }
+
+    private static Path snapshotOf(Path dir, KnowledgeRecord... recs) throws Exception {
+        KnowledgeIndex index = new KnowledgeIndex(null, null, null);
+        index.indexAll(List.of(recs));
+        Path file = dir.resolve("kb-index.snap");
+        index.saveSnapshot(file);
+        return file;
+    }
+
+    private static KnowledgeIndex indexAt(Path file, KnowledgeRecordRepo repo, ApplicationEventPublisher events) {
+        KnowledgeIndex index = new KnowledgeIndex(repo, events, null);
+        ReflectionTestUtils.setField(index, "snapshotPath", file.toString());
+        return index;
+    }
+
+    private static KnowledgeIdStatsView stats(long count, long maxId, long idSum) {
+        KnowledgeIdStatsView v = mock(KnowledgeIdStatsView.class);
+        when(v.getCount()).thenReturn(count);
+        when(v.getMaxId()).thenReturn(maxId);
+        when(v.getIdSum()).thenReturn(idSum);
+        return v;
+    }
+}
@@ -0,0 +1,122 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KnowledgeIndexTest {
+
+    private static KnowledgeRecord rec(long id, String dept, String bizName, String process, LocalDate date) {
+        return KnowledgeRecord.builder()
+                .id(id)
+                .department(dept)
+                .category("信贷与风险类")
+                .bizName(bizName)
+                .process(process)
+                .latestReqDate(date)
+                .build();
+    }
+
+    @Test
+    void tokenizeEmitsUnigramsBigramsAndLowercaseWords() {
+        List<String> out = new ArrayList<>();
+        CjkTokenizer.tokenize("贷款审批 ATM", out::add);
+        assertEquals(List.of("贷", "贷款", "款", "款审", "审", "审批", "批", "atm"), out);
+
+        assertEquals(List.of("贷款", "款审", "审批"), CjkTokenizer.queryTerms("贷款审批"));
+        assertEquals(List.of("门"), CjkTokenizer.queryTerms("门"));
+    }
+
+    @Test
+    void matchesWithinSameFieldOnly() {
+        KnowledgeIndex index = new KnowledgeIndex(null, null, null);
+        index.indexAll(List.of(
+                rec(1, "信贷管理部", "贷款审批", null, LocalDate.of(2024, 1, 1)),
+                rec(2, "信贷管理部", "贷款", "审批流程", LocalDate.of(2025, 1, 1)),
+                rec(3, "风险管理部", "门禁管理", "贷款审批复核", null)
+        ));
+
+        assertEquals(List.of(1L, 3L), index.search("贷款审批", null, null, 10));
+        assertEquals(List.of(3L), index.search("门", null, null, 10));
+        assertEquals(List.of(1L), index.search("贷款审批", null, "信贷管理部", 10));
+        assertTrue(index.search("不存在", null, null, 10).isEmpty());
+    }
+
+    @Test
+    void facetCountsIgnoreOwnFilterOnly() {
+        KnowledgeIndex index = new KnowledgeIndex(null, null, null);
+        KnowledgeRecord guard = rec(4, "安全保卫部", "印章管理", null, null);
+        guard.setCategory("保障类");
+        index.indexAll(List.of(
+                rec(1, "信贷管理部", "印章管理", null, null),
+                rec(2, "信贷管理部", "印章交接", "印章管理", null),
+                rec(3, "风险管理部", "印章管理", null, null),
+                guard,
+                rec(5, "风险管理部", "门禁管理", null, null)
+        ));
+
+        KnowledgeIndex.FacetedHits r = index.searchFaceted(List.of("印章管理"), "信贷与风险类", "信贷管理部", null, 10);
+        assertEquals(List.of(1L, 2L), r.hits().stream().map(KnowledgeIndex.Hit::id).sorted().toList());
+        assertEquals(2, r.facets().total());
+        // 分类计数只受部门筛选影响，部门计数只受分类筛选影响
+        assertEquals(java.util.Map.of("信贷与风险类", 2), r.facets().categories());
+        assertEquals(java.util.Map.of("信贷管理部", 2, "风险管理部", 1), r.facets().departments());
+
+        assertEquals(index.search("印章管理", "信贷与风险类", "信贷管理部", 10),
+                r.hits().stream().map(KnowledgeIndex.Hit::id).toList());
+    }
+
+    @Test
+    void reindexReplacesOldPostings() {
+        KnowledgeIndex index = new KnowledgeIndex(null, null, null);
+        index.indexAll(List.of(rec(1, "科技部", "门禁管理", null, null)));
+        index.indexAll(List.of(rec(1, "科技部", "机房巡检", null, null)));
+
+        assertTrue(index.search("门禁", null, null, 10).isEmpty());
+        assertEquals(List.of(1L), index.search("巡检", null, null, 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void ranksBizNameHitAboveBodyHitAndKeepsTopK() {
+        KnowledgeIndex index = new KnowledgeIndex(null, null, null);
+        KnowledgeRecord body = rec(1, "审计部", "离任审计", null, LocalDate.now());
+        body.setCaseText("某支行在办理业务时未按规定执行印章管理要求，导致风险事件。");
+        index.indexAll(List.of(
+                body,
+                rec(2, "运营管理部", "印章管理", null, LocalDate.of(2015, 1, 1)),
+                rec(3, "运营管理部", "重要物品", "印章管理与交接", LocalDate.of(2015, 1, 1))
+        ));
+
+        assertEquals(List.of(2L, 3L, 1L), index.search("印章管理", null, null, 10));
+        assertEquals(List.of(2L), index.search("印章管理", null, null, 1));
+    }
+
+    @Test
+    void searchAfterPagesThroughAllHitsWithoutOverlap() {
+        KnowledgeIndex index = new KnowledgeIndex(null, null, null);
+        List<KnowledgeRecord> recs = new ArrayList<>();
+        for (long id = 1; id <= 7; id++) {
+            recs.add(rec(id, "运营管理部", "印章管理", null, id % 2 == 0 ? LocalDate.of(2024, 1, 1) : null));
+        }
+        index.indexAll(recs);
+
+        List<Long> all = index.search("印章", null, null, 10);
+        List<Long> paged = new ArrayList<>();
+        KnowledgeIndex.Hit after = null;
+        while (true) {
+            List<KnowledgeIndex.Hit> page = index.searchAfter(List.of("印章"), null, null, after, 3);
+            if (page.isEmpty()) break;
+            page.forEach(h -> paged.add(h.id()));
+            after = SeekCursor.parseSearch(SeekCursor.of(page.get(page.size() - 1)));
+        }
+        assertEquals(all, paged);
+        assertEquals(7, paged.size());
+        assertThrows(IllegalArgumentException.class, () -> SeekCursor.parseSearch("not-a-cursor"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PinyinIndexTest {
+
+    private static KnowledgeRecord rec(long id, String dept, String bizName) {
+        return KnowledgeRecord.builder()
+                .id(id)
+                .department(dept)
+                .category("信贷与风险类")
+                .bizName(bizName)
+                .build();
+    }
+
+    @Test
+    void pinyinAndInitialsMatchNamesDepartmentsAndKeywords() {
+        PinyinIndex pinyin = new PinyinIndex();
+        KnowledgeIndex index = new KnowledgeIndex(null, null, pinyin);
+        KnowledgeRecord loan = rec(1, "信贷管理部", "贷款审批");
+        KnowledgeRecord bank = rec(2, "运营管理部", "电子银行签约");
+        bank.setKeywords("网银,ATM机");
+        index.indexAll(List.of(loan, bank, rec(3, "运营管理部", "现金清点"), rec(4, "综合管理部", "营业管理")));
+        pinyin.onIndexReady(new KnowledgeIndexReadyEvent(index));
+
+        assertEquals(List.of(1L), index.search("xdgl", null, null, 10));
+        assertEquals(List.of(1L), index.search("dksp", null, null, 10));
+        assertEquals(List.of(1L), index.search("DaiKuan ShenPi", null, null, 10));
+        // 多音字：行 xing/hang
+        assertEquals(List.of(2L), index.search("dianziyinhang", null, null, 10));
+        assertEquals(List.of(2L), index.search("atmj", null, null, 10));
+        // 业务名称命中（营业管理）排在只命中部门（运营管理部）的前面
+        assertEquals(4L, index.search("yygl", null, null, 10).get(0));
+        assertEquals(3, index.search("yygl", null, null, 10).size());
+        assertTrue(index.search("x", null, null, 10).isEmpty());
+        assertTrue(index.search("xdgl", null, "运营管理部", 10).isEmpty());
+
+        loan.setDepartment("风险管理部");
+        index.indexAll(List.of(loan));
+        pinyin.onKnowledgeChanged(new KnowledgeChangedEvent(List.of(loan)));
+        assertTrue(index.search("xdgl", null, null, 10).isEmpty());
+        assertEquals(List.of(1L), index.search("fxgl", null, null, 10));
+    }
+
+    @Test
+    void shortPrefixExpandsAtMostMaxForms() {
+        PinyinIndex pinyin = new PinyinIndex();
+        List<KnowledgeRecord> recs = new ArrayList<>();
+        for (long id = 1; id <= PinyinIndex.MAX_FORMS + 100; id++) recs.add(rec(id, null, "贷款" + letters(id)));
+        pinyin.onKnowledgeChanged(new KnowledgeChangedEvent(recs));
+
+        // 每条记录一个首字母形式 dk<字母后缀>，前缀 dk 只展开排在前面的 MAX_FORMS 个
+        assertEquals(PinyinIndex.MAX_FORMS, pinyin.match("dk").size());
+        // 前缀足够长时不受影响
+        assertEquals(Set.of(600L), pinyin.match("dk" + letters(600)).keySet());
+        assertEquals(Set.of(600L), pinyin.match("daikuan" + letters(600)).keySet());
+    }
+
+    // 拼音查询只认字母：id 转成三位字母后缀，如 1 -> aab
+    private static String letters(long id) {
+        return "" + (char) ('a' + id / 676) + (char) ('a' + id / 26 % 26) + (char) ('a' + id % 26);
+    }
+}
@@ -0,0 +1,51 @@
+package com.bank.kb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PinyinTest {
+
+    @Test
+    void formsGiveFullPinyinAndInitials() {
+        Pinyin.Forms dept = Pinyin.forms("信贷管理部");
+        assertEquals(List.of("xindaiguanlibu"), dept.full());
+        assertEquals(List.of("xdglb"), dept.initials());
+
+        // 字母数字原样小写保留，标点丢掉
+        Pinyin.Forms atm = Pinyin.forms("ATM·机");
+        assertEquals(List.of("atmji"), atm.full());
+        assertEquals(List.of("atmj"), atm.initials());
+
+        assertSame(Pinyin.Forms.EMPTY, Pinyin.forms("ATM 2025"));
+        assertSame(Pinyin.Forms.EMPTY, Pinyin.forms("  "));
+        assertSame(Pinyin.Forms.EMPTY, Pinyin.forms(null));
+    }
+
+    @Test
+    void polyphonesStartFromCommonReadingsAndAreCapped() {
+        assertEquals(List.of("xing", "hang"), List.of(Pinyin.readings('行')).subList(0, 2));
+
+        // 8 个多音字，组合远多于上限：常用读音在前，再逐个换读音，到 MAX_VARIANTS 为止
+        Pinyin.Forms f = Pinyin.forms("行长重乐行长重乐");
+        assertEquals(Pinyin.MAX_VARIANTS, f.full().size());
+        assertEquals("xingzhangzhonglexingzhangzhongle", f.full().get(0));
+        assertTrue(f.full().get(1).startsWith("hangzhangzhongle"));
+        assertTrue(f.initials().size() <= Pinyin.MAX_VARIANTS);
+        assertEquals("xzzlxzzl", f.initials().get(0));
+
+        assertEquals(List.of("yinxing", "yinhang"), Pinyin.forms("银行").full().subList(0, 2));
+    }
+
+    @Test
+    void asQueryAcceptsOnlyLettersSpacesAndApostrophes() {
+        assertEquals("daikuanshenpi", Pinyin.asQuery("DaiKuan ShenPi"));
+        assertEquals("xian", Pinyin.asQuery("xi'an"));
+        assertNull(Pinyin.asQuery("x"));
+        assertNull(Pinyin.asQuery("atm1"));
+        assertNull(Pinyin.asQuery("贷款"));
+        assertNull(Pinyin.asQuery(null));
+    }
+}
@@ -0,0 +1,97 @@
+package com.bank.kb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCacheTest {
+
+    private static final SearchCache.Key KEY = SearchCache.Key.of("full", "贷款", null, null, null, 50);
+
+    @Test
+    void concurrentIdenticalMissesShareOneExecution() throws Exception {
+        SearchCache cache = new SearchCache();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<String> leader = pool.submit(() -> cache.get(KEY, () -> {
+                runs.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "结果";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // 同一查询（大小写、空白不同也归一成同一个 key）在第一次还没算完时进来
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(pool.submit(() -> cache.get(SearchCache.Key.of("full", " 贷款 ", null, null, null, 50), () -> {
+                    runs.incrementAndGet();
+                    return "重复执行";
+                })));
+            }
+            while (cache.stats().coalesced() < 7) Thread.sleep(5);
+            release.countDown();
+
+            assertEquals("结果", leader.get(5, TimeUnit.SECONDS));
+            for (Future<String> f : followers) assertEquals("结果", f.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, runs.get());
+        assertEquals(1, cache.stats().misses());
+        assertEquals(7, cache.stats().coalesced());
+    }
+
+    @Test
+    void followersSeeTheLeadersExceptionAndWritesStartANewFlight() throws Exception {
+        SearchCache cache = new SearchCache();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> leader = pool.submit(() -> cache.get(KEY, () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalArgumentException("游标无效");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<Object> follower = pool.submit(() -> cache.get(KEY, () -> "不该执行"));
+            while (cache.stats().coalesced() < 1) Thread.sleep(5);
+
+            // 写入后（代数变了）的新请求不挂到写入前开始的那次计算上
+            cache.invalidateAll();
+            assertEquals("新结果", cache.get(KEY, () -> "新结果"));
+
+            release.countDown();
+            var e = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+            assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("新结果", cache.get(KEY, () -> "不该执行"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.bank.kb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeekCursorTest {
+
+    @Test
+    void changeWatermarkRoundTripsAndTruncatesToMicros() {
+        LocalDateTime at = LocalDateTime.of(2025, 12, 16, 9, 30, 0, 123_456_789);
+        SeekCursor.ChangeKey key = SeekCursor.parseChange(SeekCursor.of(new SeekCursor.ChangeKey(at, 42)));
+
+        // 库里只存到微秒，水位不能比库里的值晚
+        assertEquals(new SeekCursor.ChangeKey(LocalDateTime.of(2025, 12, 16, 9, 30, 0, 123_456_000), 42), key);
+
+        LocalDateTime whole = LocalDateTime.of(2025, 12, 16, 0, 0);
+        assertEquals(new SeekCursor.ChangeKey(whole, 1), SeekCursor.parseChange(SeekCursor.of(new SeekCursor.ChangeKey(whole, 1))));
+    }
+
+    @Test
+    void parseChangeRejectsTamperedOrForeignCursors() {
+        assertThrows(IllegalArgumentException.class,
+                () -> SeekCursor.parseChange(SeekCursor.of(new SeekCursor.ListKey(LocalDate.of(2025, 1, 1), 3))));
+        assertThrows(IllegalArgumentException.class, () -> SeekCursor.parseChange("不是游标"));
+        assertThrows(IllegalArgumentException.class, () -> SeekCursor.parseChange(raw("c|2025-01-01T00:00|x")));
+        assertThrows(IllegalArgumentException.class, () -> SeekCursor.parseChange(raw("c|昨天|1")));
+        assertThrows(IllegalArgumentException.class, () -> SeekCursor.parseChange(raw("c|2025-01-01T00:00|1|2")));
+    }
+
+    private static String raw(String s) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
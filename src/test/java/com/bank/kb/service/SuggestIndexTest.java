@@ -0,0 +1,40 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestIndexTest {
+
+    private static KnowledgeRecord rec(long id, String dept, String bizName) {
+        return KnowledgeRecord.builder()
+                .id(id)
+                .department(dept)
+                .category("信贷与风险类")
+                .bizName(bizName)
+                .build();
+    }
+
+    @Test
+    void suggestRanksByFrequencyAndFollowsUpdates() {
+        KnowledgeIndex index = new KnowledgeIndex(null, null, null);
+        KnowledgeRecord a = rec(1, "信贷管理部", "贷款审批");
+        a.setKeywords("贷款,放款审批");
+        KnowledgeRecord b = rec(2, "信贷管理部", "贷后检查");
+        b.setKeywords("贷款、贷后");
+        index.indexAll(List.of(a, b));
+
+        SuggestIndex suggest = new SuggestIndex();
+        suggest.onIndexReady(new KnowledgeIndexReadyEvent(index));
+        assertEquals("贷款", suggest.suggest("贷", 10).get(0).term());
+        assertEquals(2, suggest.suggest("贷", 10).get(0).count());
+        assertEquals(4, suggest.suggest("贷", 10).size());
+
+        b.setKeywords("贷后");
+        suggest.onKnowledgeChanged(new KnowledgeChangedEvent(List.of(b)));
+        assertEquals(1, suggest.suggest("贷款", 10).stream().filter(s -> s.term().equals("贷款")).findFirst().orElseThrow().count());
+    }
+}
@@ -0,0 +1,44 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.KnowledgeRecord;
+import com.bank.kb.entity.SynonymEntry;
+import com.bank.kb.repo.SynonymEntryRepo;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SynonymServiceTest {
+
+    private static KnowledgeRecord rec(long id, String dept, String bizName) {
+        return KnowledgeRecord.builder()
+                .id(id)
+                .department(dept)
+                .category("信贷与风险类")
+                .bizName(bizName)
+                .build();
+    }
+
+    @Test
+    void synonymExpansionFindsRecordsUsingOnlyTheFullTerm() {
+        KnowledgeIndex index = new KnowledgeIndex(null, null, null);
+        KnowledgeRecord full = rec(1, "信贷管理部", "个人住房贷款");
+        full.setKeywords("房贷");
+        KnowledgeRecord other = rec(2, "信贷管理部", "经营性贷款");
+        index.indexAll(List.of(full, other, rec(3, "运营管理部", "大额存单")));
+
+        SynonymEntryRepo repo = mock(SynonymEntryRepo.class);
+        when(repo.findAll()).thenReturn(List.of(
+                SynonymEntry.builder().term("大额存单").synonyms("CD、存单").build()));
+        SynonymService synonyms = new SynonymService(index, repo, new SearchCache());
+        synonyms.rebuild();
+
+        assertEquals(List.of("房贷", "个人住房贷款"), synonyms.expand("房贷"));
+        assertEquals(List.of(1L), index.search(synonyms.expand("房贷"), null, null, 10));
+        assertEquals(List.of(3L), index.search(synonyms.expand("cd"), null, null, 10));
+        assertEquals(List.of("没有同义词"), synonyms.expand("没有同义词"));
+    }
+}
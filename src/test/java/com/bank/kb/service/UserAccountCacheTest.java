@@ -0,0 +1,58 @@
+package com.bank.kb.service;
+
+import com.bank.kb.entity.UserAccount;
+import com.bank.kb.repo.UserAccountRepo;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UserAccountCacheTest {
+
+    private static UserAccount account(String hash) {
+        return UserAccount.builder().id(1L).username("xindai").passwordHash(hash).role("DEPT").department("信贷管理部").build();
+    }
+
+    @Test
+    void servesRepeatLookupsFromCacheUntilEvicted() {
+        UserAccountRepo repo = mock(UserAccountRepo.class);
+        when(repo.findByUsername("xindai")).thenReturn(Optional.of(account("h1"))).thenReturn(Optional.of(account("h2")));
+        UserAccountCache cache = new UserAccountCache(repo);
+
+        assertEquals("h1", cache.find("xindai").orElseThrow().passwordHash());
+        assertEquals("h1", cache.find("xindai").orElseThrow().passwordHash());
+        verify(repo, times(1)).findByUsername("xindai");
+
+        // 重置密码后必须重新查库
+        cache.evict("xindai");
+        assertEquals("h2", cache.find("xindai").orElseThrow().passwordHash());
+        verify(repo, times(2)).findByUsername("xindai");
+    }
+
+    @Test
+    void doesNotCacheMissingAccounts() {
+        UserAccountRepo repo = mock(UserAccountRepo.class);
+        when(repo.findByUsername("nobody")).thenReturn(Optional.empty()).thenReturn(Optional.of(account("h1")));
+        UserAccountCache cache = new UserAccountCache(repo);
+
+        assertTrue(cache.find("nobody").isEmpty());
+        assertTrue(cache.find("nobody").isPresent());
+    }
+
+    @Test
+    void evictCoversLoginsTypedInAnotherCase() {
+        // 库里排序规则不分大小写：XINDAI 查到的是 xindai 这一行
+        UserAccountRepo repo = mock(UserAccountRepo.class);
+        when(repo.findByUsername(anyString())).thenReturn(Optional.of(account("h1"))).thenReturn(Optional.of(account("h2")));
+        UserAccountCache cache = new UserAccountCache(repo);
+
+        assertEquals("h1", cache.find("XINDAI").orElseThrow().passwordHash());
+        assertEquals("h1", cache.find("xindai").orElseThrow().passwordHash());
+        verify(repo, times(1)).findByUsername(anyString());
+
+        cache.evict("xindai");
+        assertEquals("h2", cache.find("XinDai").orElseThrow().passwordHash());
+    }
+}
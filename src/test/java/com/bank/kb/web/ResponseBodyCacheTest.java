@@ -0,0 +1,144 @@
+package com.bank.kb.web;
+
+import com.bank.kb.service.SearchCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseBodyCacheTest {
+
+    private final SearchCache searchCache = new SearchCache();
+    private final ResponseBodyCache cache = new ResponseBodyCache(new ObjectMapper(), searchCache);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private ResponseBodyCache.Body load(Object value, String nextCursor) {
+        loads.incrementAndGet();
+        return new ResponseBodyCache.Body(value, nextCursor);
+    }
+
+    private static MockHttpServletRequest get(String query) {
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", "/api/search");
+        req.setQueryString(query);
+        return req;
+    }
+
+    private static String tagOf(ResponseEntity<byte[]> res) {
+        String etag = res.getHeaders().getETag();
+        return etag == null ? null : etag.substring(1, etag.length() - 1);
+    }
+
+    @Test
+    void matchingTagAcceptsWeakPrefixListsAndTheGzipVariant() {
+        assertNull(ResponseBodyCache.matchingTag(null, "v1"));
+        assertNull(ResponseBodyCache.matchingTag("  ", "v1"));
+        assertEquals("v1", ResponseBodyCache.matchingTag("\"v1\"", "v1"));
+        assertEquals("v1", ResponseBodyCache.matchingTag("W/\"v1\"", "v1"));
+        assertEquals("v1-gz", ResponseBodyCache.matchingTag("\"v1-gz\"", "v1"));
+        assertEquals("v1-gz", ResponseBodyCache.matchingTag("\"v0\", W/\"v1-gz\" ,\"v2\"", "v1"));
+        // 不带引号、旧版本、别的后缀都不算
+        assertNull(ResponseBodyCache.matchingTag("v1", "v1"));
+        assertNull(ResponseBodyCache.matchingTag("\"v0\", \"v0-gz\"", "v1"));
+        assertNull(ResponseBodyCache.matchingTag("\"v1-br\"", "v1"));
+        assertNull(ResponseBodyCache.matchingTag("\"", "v1"));
+    }
+
+    @Test
+    void matchingEtagGets304WithoutRunningTheLoader() {
+        ResponseEntity<byte[]> first = cache.respond(get("q=贷款"), () -> load(List.of("a"), null));
+        String tag = tagOf(first);
+        assertNotNull(tag);
+
+        // 别的查询串也一样：只要版本没变，不查缓存也不跑查询
+        MockHttpServletRequest again = get("q=存款");
+        again.addHeader(HttpHeaders.IF_NONE_MATCH, "W/\"" + tag + "\"");
+        ResponseEntity<byte[]> res = cache.respond(again, () -> fail("304 不该跑查询"));
+
+        assertEquals(304, res.getStatusCode().value());
+        assertEquals("\"" + tag + "\"", res.getHeaders().getETag());
+        assertNull(res.getBody());
+        assertEquals(1, loads.get());
+
+        // 写入后旧 ETag 失效
+        searchCache.invalidateAll();
+        MockHttpServletRequest stale = get("q=贷款");
+        stale.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + tag + "\"");
+        assertEquals(200, cache.respond(stale, () -> load(List.of("b"), null)).getStatusCode().value());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void writeDuringLoadGivesNoEtagAndCachesNothing() {
+        ResponseEntity<byte[]> res = cache.respond(get("q=贷款"), () -> {
+            searchCache.invalidateAll();
+            return load(List.of("a"), null);
+        });
+        assertEquals(200, res.getStatusCode().value());
+        assertNull(res.getHeaders().getETag());
+        assertEquals("[\"a\"]", new String(res.getBody(), StandardCharsets.UTF_8));
+
+        ResponseEntity<byte[]> next = cache.respond(get("q=贷款"), () -> load(List.of("b"), null));
+        assertEquals("[\"b\"]", new String(next.getBody(), StandardCharsets.UTF_8));
+        assertNotNull(next.getHeaders().getETag());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void gzipOnlyWhenAcceptedAndLargeEnough() throws IOException {
+        ReflectionTestUtils.setField(cache, "gzipMinBytes", 64);
+        List<String> big = List.of("贷款审批".repeat(20));
+        List<String> small = List.of("a");
+
+        MockHttpServletRequest gzipReq = get("q=big");
+        gzipReq.addHeader(HttpHeaders.ACCEPT_ENCODING, "br, GZIP");
+        ResponseEntity<byte[]> gz = cache.respond(gzipReq, () -> load(big, null));
+        assertEquals("gzip", gz.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(tagOf(gz).endsWith("-gz"));
+        assertEquals(new ObjectMapper().writeValueAsString(big), gunzip(gz.getBody()));
+
+        // 同一条缓存，不接受 gzip 的拿明文，ETag 不同
+        ResponseEntity<byte[]> plain = cache.respond(get("q=big"), () -> load(big, null));
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(tagOf(gz), tagOf(plain) + "-gz");
+        assertEquals(new ObjectMapper().writeValueAsString(big), new String(plain.getBody(), StandardCharsets.UTF_8));
+
+        MockHttpServletRequest smallReq = get("q=small");
+        smallReq.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        ResponseEntity<byte[]> tiny = cache.respond(smallReq, () -> load(small, null));
+        assertNull(tiny.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertFalse(tagOf(tiny).endsWith("-gz"));
+        assertEquals("[\"a\"]", new String(tiny.getBody(), StandardCharsets.UTF_8));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void cacheHitKeepsTheNextCursorHeader() {
+        ResponseEntity<byte[]> miss = cache.respond(get("q=贷款&limit=1"), () -> load(List.of("a"), "c1"));
+        ResponseEntity<byte[]> hit = cache.respond(get("q=贷款&limit=1"), () -> load(List.of("x"), "x"));
+
+        assertEquals(1, loads.get());
+        assertEquals("c1", miss.getHeaders().getFirst(KnowledgeController.NEXT_CURSOR_HEADER));
+        assertEquals("c1", hit.getHeaders().getFirst(KnowledgeController.NEXT_CURSOR_HEADER));
+        assertArrayEquals(miss.getBody(), hit.getBody());
+
+        ResponseEntity<byte[]> last = cache.respond(get("q=贷款&limit=1&cursor=c1"), () -> load(List.of(), null));
+        assertNull(last.getHeaders().getFirst(KnowledgeController.NEXT_CURSOR_HEADER));
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.bank.kb.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchRateLimitFilterTest {
+
+    private static SearchRateLimitFilter filter(int burst, int maxConcurrent, int maxQueue, long queueTimeoutMs) throws Exception {
+        SearchRateLimitFilter f = new SearchRateLimitFilter();
+        ReflectionTestUtils.setField(f, "perClientRate", 0.01);
+        ReflectionTestUtils.setField(f, "perClientBurst", burst);
+        ReflectionTestUtils.setField(f, "maxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(f, "maxQueue", maxQueue);
+        ReflectionTestUtils.setField(f, "queueTimeoutMs", queueTimeoutMs);
+        f.afterPropertiesSet();
+        return f;
+    }
+
+    private static MockHttpServletResponse call(SearchRateLimitFilter f, String ip, String uri, FilterChain chain) throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", uri);
+        req.setRemoteAddr(ip);
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        f.doFilter(req, res, chain);
+        return res;
+    }
+
+    @Test
+    void eachClientGetsItsOwnBurstThen429() throws Exception {
+        SearchRateLimitFilter f = filter(3, 8, 8, 100);
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        f.bindTo(meters);
+
+        for (int i = 0; i < 3; i++) assertEquals(200, call(f, "10.0.0.1", "/api/search", new MockFilterChain()).getStatus());
+        MockHttpServletResponse limited = call(f, "10.0.0.1", "/api/search", new MockFilterChain());
+        assertEquals(429, limited.getStatus());
+        assertNotNull(limited.getHeader("Retry-After"));
+
+        // 别的终端不受影响；其它接口不限流
+        assertEquals(200, call(f, "10.0.0.2", "/api/search", new MockFilterChain()).getStatus());
+        assertEquals(200, call(f, "10.0.0.1", "/api/suggest", new MockFilterChain()).getStatus());
+        assertEquals(1.0, meters.get("kb.search.rejected").tag("reason", "rate").counter().count());
+    }
+
+    @Test
+    void newAnonymousSessionDoesNotResetTheIpBucket() throws Exception {
+        SearchRateLimitFilter f = filter(2, 8, 8, 100);
+        for (int i = 0; i < 2; i++) assertEquals(200, callWith(f, new MockHttpSession()).getStatus());
+        // 换一个新的（服务端确实存在的）匿名会话，仍按 IP 计
+        assertEquals(429, callWith(f, new MockHttpSession()).getStatus());
+
+        // 已登录的按账号：同一 IP 上另一个登录用户有自己的桶，换会话也还是同一个桶
+        MockHttpSession alice = loggedIn("alice");
+        for (int i = 0; i < 2; i++) assertEquals(200, callWith(f, alice).getStatus());
+        assertEquals(429, callWith(f, loggedIn("alice")).getStatus());
+        assertEquals(200, callWith(f, loggedIn("bob")).getStatus());
+    }
+
+    private static MockHttpServletResponse callWith(SearchRateLimitFilter f, MockHttpSession session) throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", "/api/search");
+        req.setRemoteAddr("10.0.0.9");
+        req.setSession(session);
+        req.setRequestedSessionId(session.getId());
+        MockHttpServletResponse res = new MockHttpServletResponse();
+        f.doFilter(req, res, new MockFilterChain());
+        return res;
+    }
+
+    private static MockHttpSession loggedIn(String username) {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute(HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY,
+                new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(username, null, List.of())));
+        return session;
+    }
+
+    @Test
+    void shedsWith503OnceConcurrencyAndQueueAreFull() throws Exception {
+        SearchRateLimitFilter f = filter(100, 1, 1, 500);
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        f.bindTo(meters);
+
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slow = (req, res) -> {
+            inside.countDown();
+            try {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<MockHttpServletResponse> running = pool.submit(() -> call(f, "10.0.0.1", "/api/search", slow));
+            assertTrue(inside.await(5, TimeUnit.SECONDS));
+
+            // 一个在执行、一个在排队：第三个直接 503；排队的等不到也 503
+            Future<MockHttpServletResponse> waiting = pool.submit(() -> call(f, "10.0.0.2", "/api/search", new MockFilterChain()));
+            while (meters.get("kb.search.queued").gauge().value() < 1 && !waiting.isDone()) Thread.sleep(1);
+            assertEquals(503, call(f, "10.0.0.3", "/api/search", new MockFilterChain()).getStatus());
+            assertEquals(503, waiting.get(5, TimeUnit.SECONDS).getStatus());
+
+            release.countDown();
+            assertEquals(200, running.get(5, TimeUnit.SECONDS).getStatus());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(200, call(f, "10.0.0.3", "/api/search", new MockFilterChain()).getStatus());
+        assertEquals(1.0, meters.get("kb.search.rejected").tag("reason", "queue_full").counter().count());
+        assertEquals(1.0, meters.get("kb.search.rejected").tag("reason", "queue_timeout").counter().count());
+    }
+}